@@ -0,0 +1,51 @@
+package org.dreamwork.integration.httpd.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 缓存一个 {@code GET} 方法的 {@link ARestfulAPI} 处理方法的响应.
+ *
+ * <p>缓存的是已经序列化好的响应内容，命中时既不调用处理方法，也不再序列化。
+ * 每个缓存条目带有 {@code ETag}，请求的 {@code If-None-Match} 匹配时直接返回 {@code 304}</p>
+ * <p>只有状态码为 200 的响应才会被缓存，处理方法抛出的异常不会被缓存。
+ * 缓存条目只包含响应内容和 content type，处理方法自行设置的 http 头（如 {@code Cache-Control}、
+ * {@code Set-Cookie}）只出现在生成缓存的那一次响应中，命中缓存时不会重放</p>
+ * <pre>&#64;ARestfulAPI ("/user/${id}")
+ * &#64;ACacheable (value = "users", ttl = 5000, keys = "id")
+ * public User getUser (&#64;APathVariable ("id") String id, &#64;AHeader ("X-Trace-Id") String trace) {
+ *     ...
+ * }</pre>
+ * 模块可以通过 {@code IHttpdService#invalidate} 使缓存失效：
+ * <pre>httpd.invalidate (context.getInfo (), "users", id);</pre>
+ *
+ * @since 1.1.0
+ */
+@Target ({ElementType.METHOD})
+@Retention (RetentionPolicy.RUNTIME)
+@Documented
+public @interface ACacheable {
+    /**
+     * 缓存的名称，用于使缓存失效。同一模块内同名的多个处理方法一起失效
+     * @return 缓存名称，默认为处理方法映射的路径
+     */
+    String value () default "";
+
+    /**
+     * @return 缓存条目的存活时间，单位毫秒
+     */
+    long ttl () default 5000;
+
+    /**
+     * @return 缓存的最大条目数
+     */
+    int maxEntries () default 1024;
+
+    /**
+     * 组成缓存键的参数名称，按此顺序组合
+     * <p>默认使用所有来自请求路径、查询串、http 头和 cookie 的参数，按方法参数的顺序组合。
+     * 处理方法绑定了请求体、request/session/context 属性，或 {@code HttpServletRequest}、{@code HttpSession}、
+     * {@code ServletContext} 时，响应不只由这些参数决定，必须明确指定缓存键，否则扫描时抛出 {@link IllegalArgumentException}</p>
+     * @return 参数名称
+     */
+    String[] keys () default {};
+}
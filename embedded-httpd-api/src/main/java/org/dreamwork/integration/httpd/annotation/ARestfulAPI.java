@@ -52,4 +52,15 @@ public @interface ARestfulAPI {
      * @since 1.1.0
      */
     boolean wrapped () default false;
+
+    /**
+     * 处理方法是否会阻塞，比如等待数据库或远程服务的响应.
+     * <p>阻塞式的处理方法在配置了 {@code http.service.dispatcher} 时，通过 servlet 3 的异步模式交给专门的执行器运行，
+     * 不占用 tomcat 的连接器线程；未配置时仍在连接器线程上运行.</p>
+     * <p>处理方法也可以直接返回 {@link java.util.concurrent.CompletionStage}，框架在其完成时输出结果，
+     * 这种情况不需要声明此属性</p>
+     * @return 处理方法会阻塞时返回 true
+     * @since 1.1.0
+     */
+    boolean blocking () default false;
 }
\ No newline at end of file
@@ -11,7 +11,7 @@ import org.slf4j.LoggerFactory;
 /**
  * Created by seth.yang on 2019/12/5
  */
-public class EmbeddedHttpdModule implements IModule {
+public class EmbeddedHttpdModule implements IModule, EmbeddedHttpdModuleMBean {
     private final Logger logger = LoggerFactory.getLogger (EmbeddedHttpdModule.class);
 
     private EmbeddedHttpdService httpd;
@@ -49,6 +49,71 @@ public class EmbeddedHttpdModule implements IModule {
 
     @Override
     public String getMBeanName () {
-        return null;
+        // @since 1.1.0
+        return "embedded-httpd";
+    }
+
+    @Override
+    public String[] getConnectors () {
+        return httpd == null ? new String[0] : httpd.getConnectorNames ();
+    }
+
+    @Override
+    public long getMaxThreads () {
+        return statistic ("ThreadPool", "maxThreads", false);
+    }
+
+    @Override
+    public long getCurrentThreadCount () {
+        return statistic ("ThreadPool", "currentThreadCount", false);
+    }
+
+    @Override
+    public long getCurrentThreadsBusy () {
+        return statistic ("ThreadPool", "currentThreadsBusy", false);
+    }
+
+    @Override
+    public long getConnectionCount () {
+        return statistic ("ThreadPool", "connectionCount", false);
+    }
+
+    @Override
+    public long getRequestCount () {
+        return statistic ("GlobalRequestProcessor", "requestCount", false);
+    }
+
+    @Override
+    public long getErrorCount () {
+        return statistic ("GlobalRequestProcessor", "errorCount", false);
+    }
+
+    @Override
+    public long getProcessingTime () {
+        return statistic ("GlobalRequestProcessor", "processingTime", false);
+    }
+
+    @Override
+    public long getMaxTime () {
+        return statistic ("GlobalRequestProcessor", "maxTime", true);
+    }
+
+    @Override
+    public long getBytesSent () {
+        return statistic ("GlobalRequestProcessor", "bytesSent", false);
+    }
+
+    @Override
+    public long getBytesReceived () {
+        return statistic ("GlobalRequestProcessor", "bytesReceived", false);
+    }
+
+    @Override
+    public String getApiMetrics () {
+        return httpd == null ? "[]" : httpd.getMetrics ().toJson ();
+    }
+
+    private long statistic (String type, String attribute, boolean max) {
+        return httpd == null ? 0 : httpd.statistic (type, attribute, max);
     }
 }
@@ -0,0 +1,47 @@
+package org.dreamwork.integration.internal;
+
+/**
+ * 嵌入式 httpd 的 JMX 接口，汇总所有连接器的线程池和请求处理统计，以及 restful api 的运行指标.
+ *
+ * <p>数据来自 tomcat 自身注册的 {@code ThreadPool} 和 {@code GlobalRequestProcessor} MBean，
+ * 多个连接器（http 和 https）的数值相加，{@link #getMaxTime()} 取最大值</p>
+ *
+ * @since 1.1.0
+ */
+public interface EmbeddedHttpdModuleMBean {
+    /** @return 所有连接器的名称，如 {@code http-nio-7777} */
+    String[] getConnectors ();
+
+    /** @return 最大线程数 */
+    long getMaxThreads ();
+
+    /** @return 当前线程数 */
+    long getCurrentThreadCount ();
+
+    /** @return 正在处理请求的线程数 */
+    long getCurrentThreadsBusy ();
+
+    /** @return 当前连接数 */
+    long getConnectionCount ();
+
+    /** @return 处理过的请求数 */
+    long getRequestCount ();
+
+    /** @return 出错的请求数 */
+    long getErrorCount ();
+
+    /** @return 处理请求的总耗时，单位毫秒 */
+    long getProcessingTime ();
+
+    /** @return 单个请求的最大耗时，单位毫秒 */
+    long getMaxTime ();
+
+    /** @return 发送的字节数 */
+    long getBytesSent ();
+
+    /** @return 接收的字节数 */
+    long getBytesReceived ();
+
+    /** @return 每个 restful api 路由的延迟分布、正在处理的请求数、错误数和输出字节数，json 格式，时间单位为微秒 */
+    String getApiMetrics ();
+}
@@ -4,27 +4,44 @@ import org.dreamwork.integration.api.IModule;
 import org.dreamwork.integration.api.IModuleContext;
 import org.dreamwork.integration.api.ModuleInfo;
 import org.dreamwork.integration.api.services.IHttpdService;
+import org.dreamwork.integration.internal.embedded.httpd.ApiMetrics;
 import org.dreamwork.integration.internal.embedded.httpd.ApiServlet;
+import org.dreamwork.integration.internal.embedded.httpd.AsyncDispatcher;
+import org.dreamwork.integration.internal.embedded.httpd.RequestGate;
+import org.dreamwork.integration.internal.embedded.httpd.ResponseCaches;
 import org.dreamwork.integration.internal.embedded.httpd.ServiceScanner;
 import org.apache.catalina.Context;
+import org.apache.catalina.Executor;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
 import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardThreadExecutor;
 import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.coyote.http2.Http2Protocol;
+import org.apache.tomcat.util.net.SSLHostConfig;
+import org.apache.tomcat.util.net.SSLHostConfigCertificate;
 import org.dreamwork.config.IConfiguration;
 import org.dreamwork.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.servlet.ServletContext;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *  Created by fei on 2020/04/16
@@ -35,9 +52,17 @@ public class EmbeddedHttpdService implements IHttpdService {
     private final Tomcat tomcat = new Tomcat ();
     private final ServerClassLoader scl = new ServerClassLoader();
     private final Map<String, Context> loadedContexts = Collections.synchronizedMap (new HashMap<>());
+    /** @since 1.1.0 */
+    private final Map<String, RequestGate> gates = new ConcurrentHashMap<> ();
 
     /** @since 1.1.0 */
     private File webapps;
+    /** 所有 web 应用共享的异步执行设置 @since 1.1.0 */
+    private AsyncDispatcher dispatcher;
+    /** 所有 web 应用的 restful api 运行指标 @since 1.1.0 */
+    private final ApiMetrics metrics = new ApiMetrics ();
+    /** 所有 web 应用的 restful api 响应缓存 @since 1.1.0 */
+    private final ResponseCaches caches = new ResponseCaches ();
 
     EmbeddedHttpdService (IConfiguration conf) {
         this.conf = conf;
@@ -47,6 +72,7 @@ public class EmbeddedHttpdService implements IHttpdService {
         if (logger.isTraceEnabled ()) {
             logger.trace ("starting embedded httpd server ...");
         }
+        dispatcher = AsyncDispatcher.create (conf);
         setupTomcat ();
         logger.info ("embedded httpd server started.");
     }
@@ -55,6 +81,10 @@ public class EmbeddedHttpdService implements IHttpdService {
         tomcat.stop ();
         tomcat.destroy();
         tomcat.getServer().await();
+        // @since 1.1.0
+        if (dispatcher != null) {
+            dispatcher.shutdown ();
+        }
     }
 
     private void setupTomcat () throws IOException, LifecycleException {
@@ -85,7 +115,8 @@ public class EmbeddedHttpdService implements IHttpdService {
         tomcat.setPort (http_port);
         tomcat.setHostname (host);
         tomcat.getHost().setParentClassLoader(scl);
-        tomcat.getConnector ();
+        // @since 1.1.0
+        setupConnectors (http_port, https_enabled, https_port);
 
         if (logger.isTraceEnabled()) {
             logger.trace ("Catalina Base = {}", tomcat.getServer().getCatalinaBase().getCanonicalPath());
@@ -93,7 +124,7 @@ public class EmbeddedHttpdService implements IHttpdService {
 
         Context root = tomcat.addContext ("", "ROOT");
         root.setParentClassLoader (scl);
-        Wrapper wrapper = Tomcat.addServlet(root, "management-servlet", new ManageServlet());
+        Wrapper wrapper = Tomcat.addServlet(root, "management-servlet", new ManageServlet (metrics));
         wrapper.addMapping ("/mgt/*");
         wrapper.addMapping ("/favicon.ico");
 //        Tomcat.addServlet (root, "restful-api-mapping", new RestfulAPIServlet ()).addMapping ("/api/*");
@@ -104,6 +135,164 @@ public class EmbeddedHttpdService implements IHttpdService {
         webapps = serverRoot.getParentFile ();
     }
 
+    /**
+     * 按 {@code http.service.*} 的配置创建 http 连接器，以及在启用时创建 https 连接器
+     * @since 1.1.0
+     */
+    private void setupConnectors (int httpPort, boolean httpsEnabled, int httpsPort) {
+        Executor executor = null;
+        if (conf.getBoolean (KEY_EXECUTOR_SHARED, false)) {
+            // 所有连接器共享同一个线程池，此时线程数的配置作用于这个线程池
+            StandardThreadExecutor shared = new StandardThreadExecutor ();
+            shared.setName ("httpd-executor");
+            shared.setNamePrefix ("httpd-exec-");
+            String value = conf.getString (KEY_MAX_THREADS);
+            if (!StringUtil.isEmpty (value)) {
+                shared.setMaxThreads (Integer.parseInt (value.trim ()));
+            }
+            value = conf.getString (KEY_MIN_SPARE_THREADS);
+            if (!StringUtil.isEmpty (value)) {
+                shared.setMinSpareThreads (Integer.parseInt (value.trim ()));
+            }
+            tomcat.getService ().addExecutor (shared);
+            executor = shared;
+        }
+
+        Connector http = createConnector (httpPort, executor);
+        tomcat.setConnector (http);
+
+        if (httpsEnabled) {
+            Connector https = createConnector (httpsPort, executor);
+            if (setupSsl (https)) {
+                tomcat.getService ().addConnector (https);
+                http.setRedirectPort (httpsPort);
+            }
+        }
+    }
+
+    /** @since 1.1.0 */
+    private Connector createConnector (int port, Executor executor) {
+        String protocol = conf.getString (KEY_PROTOCOL, "nio").trim ().toLowerCase ();
+        String className = PROTOCOLS.get (protocol);
+        if (className == null) {
+            logger.warn ("unsupported connector protocol: {}, use nio instead", protocol);
+            className = PROTOCOLS.get ("nio");
+        }
+        Connector connector = new Connector (className);
+        connector.setPort (port);
+
+        String address = conf.getString (KEY_HOST_ADDR);
+        if (!StringUtil.isEmpty (address)) {
+            connector.setProperty ("address", address.trim ());
+        }
+        for (Map.Entry<String, String> e : CONNECTOR_OPTIONS.entrySet ()) {
+            if (executor != null && (KEY_MAX_THREADS.equals (e.getKey ()) || KEY_MIN_SPARE_THREADS.equals (e.getKey ()))) {
+                continue;
+            }
+            String value = conf.getString (e.getKey ());
+            if (!StringUtil.isEmpty (value) && !connector.setProperty (e.getValue (), value.trim ())) {
+                logger.warn ("connector does not support {} = {}", e.getKey (), value);
+            }
+        }
+
+        ProtocolHandler handler = connector.getProtocolHandler ();
+        if (executor != null && handler != null) {
+            handler.setExecutor (executor);
+        }
+        if (conf.getBoolean (KEY_HTTP2_ENABLED, false)) {
+            // 明文连接器上是 h2c 升级，https 连接器上通过 ALPN 协商
+            connector.addUpgradeProtocol (new Http2Protocol ());
+        }
+        if (logger.isTraceEnabled ()) {
+            logger.trace ("connector {}:{} created, protocol = {}", address == null ? "*" : address, port, className);
+        }
+        return connector;
+    }
+
+    /**
+     * 为 https 连接器配置证书
+     * @return 配置了证书时返回 true. 没有指定 keystore 时返回 false，不创建 https 连接器
+     * @since 1.1.0
+     */
+    private boolean setupSsl (Connector connector) {
+        String keystore = conf.getString (KEY_HTTPS_KEYSTORE);
+        if (StringUtil.isEmpty (keystore)) {
+            logger.warn ("https is enabled but {} is not set, https connector ignored.", KEY_HTTPS_KEYSTORE);
+            return false;
+        }
+        SSLHostConfig ssl = new SSLHostConfig ();
+        SSLHostConfigCertificate cert = new SSLHostConfigCertificate (ssl, SSLHostConfigCertificate.Type.UNDEFINED);
+        cert.setCertificateKeystoreFile (keystore.trim ());
+        cert.setCertificateKeystorePassword (conf.getString (KEY_HTTPS_KEYSTORE_PASSWORD));
+        cert.setCertificateKeystoreType (conf.getString (KEY_HTTPS_KEYSTORE_TYPE, "JKS"));
+        String alias = conf.getString (KEY_HTTPS_KEY_ALIAS);
+        if (!StringUtil.isEmpty (alias)) {
+            cert.setCertificateKeyAlias (alias);
+        }
+        ssl.addCertificate (cert);
+
+        connector.addSslHostConfig (ssl);
+        connector.setScheme ("https");
+        connector.setSecure (true);
+        connector.setProperty ("SSLEnabled", "true");
+        return true;
+    }
+
+    /** @since 1.1.0 */
+    ApiMetrics getMetrics () {
+        return metrics;
+    }
+
+    /**
+     * 汇总所有连接器在 tomcat 自身 MBean 中的统计数据
+     * @param type      MBean 类型，如 {@code ThreadPool}, {@code GlobalRequestProcessor}
+     * @param attribute 属性名
+     * @param max       为 true 时取最大值，否则求和
+     * @return 统计值，tomcat 未启动或没有注册 MBean 时返回 0
+     * @since 1.1.0
+     */
+    long statistic (String type, String attribute, boolean max) {
+        long result = 0;
+        for (ObjectName name : queryConnectorMBeans (type)) {
+            try {
+                Object value = ManagementFactory.getPlatformMBeanServer ().getAttribute (name, attribute);
+                if (value instanceof Number) {
+                    long n = ((Number) value).longValue ();
+                    result = max ? Math.max (result, n) : result + n;
+                }
+            } catch (Exception ex) {
+                if (logger.isTraceEnabled ()) {
+                    logger.trace ("can't read {} of {}: {}", attribute, name, ex.getMessage ());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 所有连接器的名称
+     * @since 1.1.0
+     */
+    String[] getConnectorNames () {
+        Set<ObjectName> names = queryConnectorMBeans ("ThreadPool");
+        String[] result = new String[names.size ()];
+        int i = 0;
+        for (ObjectName name : names) {
+            result[i ++] = ObjectName.unquote (name.getKeyProperty ("name"));
+        }
+        return result;
+    }
+
+    private Set<ObjectName> queryConnectorMBeans (String type) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer ();
+            return server.queryNames (new ObjectName (TOMCAT_DOMAIN + ":type=" + type + ",*"), null);
+        } catch (Exception ex) {
+            logger.warn (ex.getMessage (), ex);
+            return Collections.emptySet ();
+        }
+    }
+
 ///*
 //    @Override
 //    public boolean mapping (String pattern, Class<? extends Servlet> servlet) {
@@ -186,6 +375,9 @@ public class EmbeddedHttpdService implements IHttpdService {
                 } finally {
                     scl.removeContext (contextPath);
                     loadedContexts.remove(contextPath);
+                    gates.remove (contextPath);
+                    metrics.unregister (contextPath);
+                    caches.unregister (contextPath);
                 }
             }
         }
@@ -225,6 +417,44 @@ public class EmbeddedHttpdService implements IHttpdService {
     private static final String KEY_HTTPD_PORT      = "http.service.port";
     private static final String KEY_HTTPS_PORT      = "http.service.ssl.port";
     private static final String KEY_HTTPS_ENABLED   = "http.service.ssl.enabled";
+    /** @since 1.1.0 */
+    private static final String KEY_MAX_BODY_SIZE   = "http.service.max.body.size";
+
+    // 连接器相关的配置项 @since 1.1.0
+    private static final String KEY_PROTOCOL                = "http.service.protocol";
+    private static final String KEY_MAX_THREADS             = "http.service.max.threads";
+    private static final String KEY_MIN_SPARE_THREADS       = "http.service.min.spare.threads";
+    private static final String KEY_EXECUTOR_SHARED         = "http.service.executor.shared";
+    private static final String KEY_HTTP2_ENABLED           = "http.service.http2.enabled";
+    private static final String KEY_HTTPS_KEYSTORE          = "http.service.ssl.keystore";
+    private static final String KEY_HTTPS_KEYSTORE_PASSWORD = "http.service.ssl.keystore.password";
+    private static final String KEY_HTTPS_KEYSTORE_TYPE     = "http.service.ssl.keystore.type";
+    private static final String KEY_HTTPS_KEY_ALIAS         = "http.service.ssl.key.alias";
+
+    /** 嵌入式 tomcat 注册 MBean 时使用的域，即引擎的名称 @since 1.1.0 */
+    private static final String TOMCAT_DOMAIN = "Tomcat";
+
+    /** 协议简称 到 tomcat 协议实现类 @since 1.1.0 */
+    private static final Map<String, String> PROTOCOLS = new HashMap<> ();
+    /** 配置项 到 tomcat 连接器属性，只有配置了的项才会设置 @since 1.1.0 */
+    private static final Map<String, String> CONNECTOR_OPTIONS = new LinkedHashMap<> ();
+
+    static {
+        PROTOCOLS.put ("nio",  "org.apache.coyote.http11.Http11NioProtocol");
+        PROTOCOLS.put ("nio2", "org.apache.coyote.http11.Http11Nio2Protocol");
+        PROTOCOLS.put ("apr",  "org.apache.coyote.http11.Http11AprProtocol");
+
+        CONNECTOR_OPTIONS.put (KEY_MAX_THREADS,                           "maxThreads");
+        CONNECTOR_OPTIONS.put (KEY_MIN_SPARE_THREADS,                     "minSpareThreads");
+        CONNECTOR_OPTIONS.put ("http.service.accept.count",               "acceptCount");
+        CONNECTOR_OPTIONS.put ("http.service.max.connections",            "maxConnections");
+        CONNECTOR_OPTIONS.put ("http.service.connection.timeout",         "connectionTimeout");
+        CONNECTOR_OPTIONS.put ("http.service.keep.alive.timeout",         "keepAliveTimeout");
+        CONNECTOR_OPTIONS.put ("http.service.max.keep.alive.requests",    "maxKeepAliveRequests");
+        CONNECTOR_OPTIONS.put ("http.service.compression",                "compression");
+        CONNECTOR_OPTIONS.put ("http.service.compression.min.size",       "compressionMinSize");
+        CONNECTOR_OPTIONS.put ("http.service.compression.mime.types",     "compressibleMimeType");
+    }
 //    private static final String KEY_CONTEXT_PATH    = "http.service.context";
 
     @Override
@@ -265,11 +495,23 @@ public class EmbeddedHttpdService implements IHttpdService {
                     // 扫描注解，加载 restful apis
                     scanner.scan ();
                     if (scanner.isNotEmpty ()) {
+                        metrics.register (contextName, scanner);
+                        caches.register (contextName, scanner);
                         // 保存到 ServletContext 中
                         app.setAttribute (ServiceScanner.class.getCanonicalName (), scanner);
+                        // 模块停止前通过闸门排空正在处理的请求
+                        RequestGate gate = new RequestGate ();
+                        app.setAttribute (RequestGate.class.getCanonicalName (), gate);
+                        app.setAttribute (AsyncDispatcher.class.getCanonicalName (), dispatcher);
+                        gates.put (contextName, gate);
                         // 注册 Restful Api 处理 Servlet
                         Wrapper wrapper = Tomcat.addServlet (ctx, "restful-api", ApiServlet.class.getCanonicalName ());
                         wrapper.addMapping ("/apis/*");
+                        // 允许返回 CompletionStage 或阻塞式的处理方法异步完成
+                        wrapper.setAsyncSupported (true);
+                        wrapper.addInitParameter (
+                                ApiServlet.MAX_BODY_SIZE, String.valueOf (conf.getLong (KEY_MAX_BODY_SIZE, 10L << 20))
+                        );
                         logger.info ("embedded web app {} bound as {}/apis/*", contextName, contextName);
                     }
                 }
@@ -294,6 +536,23 @@ public class EmbeddedHttpdService implements IHttpdService {
         }
     }
 
+    @Override
+    public boolean drain (ModuleInfo module, long timeout) {
+        RequestGate gate = gates.get (getContextPath (module));
+        if (gate == null) {
+            return true;
+        }
+        if (logger.isTraceEnabled ()) {
+            logger.trace ("draining {} in-flight request(s) of module [{}]", gate.getInflight (), module.name);
+        }
+        return gate.close (timeout);
+    }
+
+    @Override
+    public void invalidate (ModuleInfo module, String cache, Object... key) {
+        caches.invalidate (getContextPath (module), cache, key);
+    }
+
     private String getContextPath (ModuleInfo module) {
         String path = module.context;
         if (StringUtil.isEmpty (path)) {
@@ -1,5 +1,6 @@
 package org.dreamwork.integration.internal;
 
+import org.dreamwork.integration.internal.embedded.httpd.ApiMetrics;
 import org.dreamwork.util.IOUtil;
 import org.dreamwork.util.StringUtil;
 
@@ -16,6 +17,21 @@ import java.io.InputStream;
  */
 @WebServlet (urlPatterns = "/mgt/*", name = "management-servlet")
 public class ManageServlet extends HttpServlet {
+    /** @since 1.1.0 */
+    private final ApiMetrics metrics;
+
+    public ManageServlet () {
+        this (null);
+    }
+
+    /**
+     * @param metrics restful api 的运行指标，通过 {@code /mgt/metrics} 输出
+     * @since 1.1.0
+     */
+    public ManageServlet (ApiMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @Override
     protected void doGet (HttpServletRequest request, HttpServletResponse response) throws IOException {
         if ("/favicon.ico".equals (request.getServletPath())) {
@@ -31,6 +47,16 @@ public class ManageServlet extends HttpServlet {
         }
 
         String pathInfo = request.getPathInfo ();
+        // @since 1.1.0
+        if ("/metrics".equals (pathInfo)) {
+            if (metrics != null) {
+                response.setContentType ("application/json;charset=utf-8");
+                response.getWriter ().write (metrics.toJson ());
+            } else {
+                response.setStatus (HttpServletResponse.SC_NOT_FOUND);
+            }
+            return;
+        }
         if (StringUtil.isEmpty (pathInfo) || "/".equals (pathInfo)) {
             response.getWriter().write(
                     "<html><body><h3><center>" +
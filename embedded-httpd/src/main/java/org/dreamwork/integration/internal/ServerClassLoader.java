@@ -4,11 +4,38 @@ import org.apache.catalina.loader.ParallelWebappClassLoader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 final class ServerClassLoader extends ClassLoader {
+    /** 未命中缓存的最大条目数 @since 1.1.0 */
+    private static final int MAX_MISSES = 4096;
+
+    static {
+        registerAsParallelCapable ();
+    }
+
     private final Map<String, ClassLoader> contexts = new HashMap<> ();
+    /** context path -> 该 context 的 jar 中包含的类名 @since 1.1.0 */
+    private final Map<String, Set<String>> listings = new HashMap<> ();
+    /** 当前的路由快照，只在 add/removeContext 时整体替换 @since 1.1.0 */
+    private volatile Routes routes = new Routes ();
+    /**
+     * 最近未能加载的类名，在 add/removeContext 时清空。
+     * 只记录基于当前路由快照的未命中，修改时需持有该 map 自身的锁 @since 1.1.0
+     */
+    private final Map<String, Boolean> misses = Collections.synchronizedMap (
+        new LinkedHashMap<String, Boolean> (64, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<String, Boolean> eldest) {
+                return size () > MAX_MISSES;
+            }
+        }
+    );
 
     private final Logger logger = LoggerFactory.getLogger (ServerClassLoader.class);
 
@@ -17,20 +44,30 @@ final class ServerClassLoader extends ClassLoader {
     }
 
     public void addContext (String path, ClassLoader loader) {
+        Set<String> names = list (loader);
         synchronized (contexts) {
             contexts.put (path, loader);
+            if (names != null) {
+                listings.put (path, names);
+            } else {
+                listings.remove (path);
+            }
+            rebuild ();
         }
     }
 
     public void removeContext (String path) {
         synchronized (contexts) {
             contexts.remove (path);
+            listings.remove (path);
+            rebuild ();
         }
     }
 
     @Override
     protected Class<?> findClass (String name) throws ClassNotFoundException {
-        if (!contexts.isEmpty ()) {
+        Routes routes = this.routes;
+        if (!routes.contexts.isEmpty ()) {
             ClassLoader loader = Thread.currentThread ().getContextClassLoader ();
             if (loader instanceof ParallelWebappClassLoader) {
                 ParallelWebappClassLoader wcl = (ParallelWebappClassLoader) loader;
@@ -38,28 +75,127 @@ final class ServerClassLoader extends ClassLoader {
                 if (logger.isTraceEnabled ()) {
                     logger.trace ("current context: {}", contextName);
                 }
-                if (contexts.containsKey (contextName)) {
-                    Class<?> c = contexts.get (contextName).loadClass (name);
+                ClassLoader current = routes.contexts.get (contextName);
+                if (current != null) {
+                    Class<?> c = current.loadClass (name);
                     if (c != null) {
                         return c;
                     }
                 }
             }
 
-            for (Map.Entry<String, ClassLoader> e : contexts.entrySet ()) {
-                try {
-                    Class<?> c = e.getValue ().loadClass (name);
-                    if (c != null) {
-                        if (logger.isTraceEnabled ()) {
-                            logger.trace ("class {} found by {}", c, e.getValue ());
-                        }
-                        return c;
+            if (!misses.containsKey (name)) {
+                Class<?> c = route (routes, name);
+                if (c != null) {
+                    if (logger.isTraceEnabled ()) {
+                        logger.trace ("class {} found by {}", c, c.getClassLoader ());
+                    }
+                    return c;
+                }
+                // 查找期间路由可能已被替换，旧快照的未命中结果不能留在新的缓存里
+                synchronized (misses) {
+                    if (this.routes == routes) {
+                        misses.put (name, Boolean.TRUE);
                     }
-                } catch (ClassNotFoundException ex) {
-                    // ignore
                 }
             }
         }
         return super.findClass (name);
     }
+
+    /**
+     * 根据索引找到持有指定类的 context 加载器。
+     * <ul>
+     * <li>类在某个 context 的 jar 中，直接交给那个 context 的加载器</li>
+     * <li>否则只可能由 context 加载器的上级加载器提供，依次询问互不相同的上级加载器</li>
+     * <li>无法建立索引的 context 加载器仍然逐个尝试</li>
+     * </ul>
+     */
+    private Class<?> route (Routes routes, String name) {
+        ClassLoader owner = routes.classes.get (name);
+        if (owner != null) {
+            try {
+                return owner.loadClass (name);
+            } catch (ClassNotFoundException ex) {
+                // ignore
+            }
+        }
+        for (ClassLoader parent : routes.parents) {
+            try {
+                return parent.loadClass (name);
+            } catch (ClassNotFoundException ex) {
+                // ignore
+            }
+        }
+        for (ClassLoader loader : routes.unindexed) {
+            try {
+                return loader.loadClass (name);
+            } catch (ClassNotFoundException ex) {
+                // ignore
+            }
+        }
+        return null;
+    }
+
+    /** 必须在持有 contexts 锁时调用 */
+    private void rebuild () {
+        Routes routes = new Routes ();
+        routes.contexts.putAll (contexts);
+        for (Map.Entry<String, ClassLoader> e : contexts.entrySet ()) {
+            ClassLoader loader = e.getValue ();
+            Set<String> names = listings.get (e.getKey ());
+            if (names == null) {
+                routes.unindexed.add (loader);
+            } else {
+                for (String name : names) {
+                    routes.classes.putIfAbsent (name, loader);
+                }
+                if (loader.getParent () != null && !routes.parents.contains (loader.getParent ())) {
+                    routes.parents.add (loader.getParent ());
+                }
+            }
+        }
+        // 替换快照和清空缓存在同一把锁内完成，和 findClass 中记录未命中互斥
+        synchronized (misses) {
+            this.routes = routes;
+            misses.clear ();
+        }
+    }
+
+    /**
+     * 列出加载器所有 jar 中的类名
+     * @return 类名集合，若加载器的 classpath 无法完整列出，返回 null
+     */
+    private Set<String> list (ClassLoader loader) {
+        if (!(loader instanceof URLClassLoader)) {
+            return null;
+        }
+        Set<String> names = new HashSet<> ();
+        for (URL url : ((URLClassLoader) loader).getURLs ()) {
+            if (!"file".equals (url.getProtocol ()) || !url.getPath ().endsWith (".jar")) {
+                return null;
+            }
+            try (JarFile jar = new JarFile (new File (url.toURI ()))) {
+                for (Enumeration<JarEntry> e = jar.entries (); e.hasMoreElements (); ) {
+                    String entry = e.nextElement ().getName ();
+                    if (entry.endsWith (".class")) {
+                        names.add (entry.substring (0, entry.length () - 6).replace ('/', '.'));
+                    }
+                }
+            } catch (Exception ex) {
+                logger.warn ("cannot list {}: {}", url, ex.getMessage ());
+                return null;
+            }
+        }
+        return names;
+    }
+
+    private static final class Routes {
+        final Map<String, ClassLoader> contexts = new HashMap<> ();
+        /** 类名 -> 持有它的 context 加载器 */
+        final Map<String, ClassLoader> classes  = new HashMap<> ();
+        /** 已索引的 context 加载器的上级加载器，去重 */
+        final List<ClassLoader> parents   = new ArrayList<> ();
+        final List<ClassLoader> unindexed = new ArrayList<> ();
+    }
 }
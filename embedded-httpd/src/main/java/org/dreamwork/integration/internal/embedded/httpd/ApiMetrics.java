@@ -0,0 +1,57 @@
+package org.dreamwork.integration.internal.embedded.httpd;
+
+import com.google.gson.GsonBuilder;
+import org.dreamwork.integration.internal.embedded.httpd.support.RouteMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 所有 web 应用的 restful api 运行指标.
+ *
+ * <p>模块挂载到 httpd 时为它的每个路由创建一个 {@link RouteMetrics}，路由名称形如
+ * <code>GET /context/apis/v1/user/${id}</code>；模块卸载时一并移除</p>
+ *
+ * @since 1.1.0
+ */
+public class ApiMetrics {
+    /** context path -> 这个 web 应用所有路由的指标 */
+    private final Map<String, List<RouteMetrics>> contexts = new ConcurrentHashMap<> ();
+
+    /**
+     * 为 web 应用的所有路由创建运行指标
+     * @param contextPath web 应用的 context path
+     * @param scanner     web 应用的 restful api
+     */
+    public void register (String contextPath, ServiceScanner scanner) {
+        List<RouteMetrics> list = new ArrayList<> ();
+        scanner.forEach ((method, ref) -> {
+            ref.metrics = new RouteMetrics (method.toUpperCase () + ' ' + contextPath + "/apis" + ref.pattern);
+            list.add (ref.metrics);
+        });
+        list.sort (Comparator.comparing (m -> m.route));
+        contexts.put (contextPath, Collections.unmodifiableList (list));
+    }
+
+    public void unregister (String contextPath) {
+        contexts.remove (contextPath);
+    }
+
+    /**
+     * 将所有路由的指标转换成 json 格式，时间单位为微秒
+     * @return json 字符串
+     */
+    public String toJson () {
+        List<Map<String, Object>> routes = new ArrayList<> ();
+        for (List<RouteMetrics> list : contexts.values ()) {
+            for (RouteMetrics metrics : list) {
+                routes.add (metrics.snapshot ());
+            }
+        }
+        return new GsonBuilder ().setPrettyPrinting ().create ().toJson (routes);
+    }
+}
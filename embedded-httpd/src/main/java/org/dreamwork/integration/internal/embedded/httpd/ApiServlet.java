@@ -1,36 +1,78 @@
 package org.dreamwork.integration.internal.embedded.httpd;
 
+import com.google.gson.FieldNamingStrategy;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import org.dreamwork.integration.httpd.support.ResponseEntity;
 import org.dreamwork.integration.httpd.support.RestfulException;
+import org.dreamwork.integration.internal.embedded.httpd.support.ArgumentBinder;
+import org.dreamwork.integration.internal.embedded.httpd.support.RequestBody;
+import org.dreamwork.integration.internal.embedded.httpd.support.ResponseCache;
+import org.dreamwork.integration.internal.embedded.httpd.support.RouteMetrics;
 import org.dreamwork.integration.internal.embedded.httpd.support.WebJsonResult;
 import org.dreamwork.integration.internal.embedded.httpd.support.WebMethodRef;
-import org.dreamwork.integration.internal.embedded.httpd.support.WebParamRef;
 import org.dreamwork.gson.GsonHelper;
-import org.dreamwork.util.IOUtil;
 import org.dreamwork.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.*;
 import java.io.IOException;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
 import static javax.servlet.http.HttpServletResponse.SC_NOT_FOUND;
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+import static javax.servlet.http.HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE;
+import static javax.servlet.http.HttpServletResponse.SC_SERVICE_UNAVAILABLE;
 
 public class ApiServlet extends HttpServlet {
+    /**
+     * servlet 初始化参数：json 请求体的最大字节数，不大于 0 时不限制
+     * @since 1.1.0
+     */
+    public static final String MAX_BODY_SIZE = "max-body-size";
+
+    /** {@link WebJsonResult} 的字段，用于按 gson 的命名策略输出信封 @since 1.1.0 */
+    private static final Field RESULT_CODE, RESULT_MESSAGE, RESULT_DATA;
+
+    static {
+        try {
+            RESULT_CODE    = WebJsonResult.class.getField ("code");
+            RESULT_MESSAGE = WebJsonResult.class.getField ("message");
+            RESULT_DATA    = WebJsonResult.class.getField ("result");
+        } catch (NoSuchFieldException ex) {
+            throw new ExceptionInInitializerError (ex);
+        }
+    }
+
     private final Logger logger = LoggerFactory.getLogger (ApiServlet.class);
 
     private ServiceScanner scanner;
+    /** @since 1.1.0 */
+    private RequestGate gate;
+    /** @since 1.1.0 */
+    private long maxBodySize;
+    /** @since 1.1.0 */
+    private AsyncDispatcher dispatcher;
+    /** 是否已经提示过请求不支持异步 @since 1.1.0 */
+    private volatile boolean asyncWarned;
 
     @Override
     public void init () throws ServletException {
@@ -38,82 +80,285 @@ public class ApiServlet extends HttpServlet {
 
         ServletContext context = getServletContext ();
         scanner = (ServiceScanner) context.getAttribute (ServiceScanner.class.getCanonicalName ());
+        gate    = (RequestGate) context.getAttribute (RequestGate.class.getCanonicalName ());
+        dispatcher = (AsyncDispatcher) context.getAttribute (AsyncDispatcher.class.getCanonicalName ());
+
+        String size = getInitParameter (MAX_BODY_SIZE);
+        if (!StringUtil.isEmpty (size)) {
+            maxBodySize = Long.parseLong (size.trim ());
+        }
     }
 
     @Override
     protected void service (HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (gate == null) {
+            dispatch (request, response);
+        } else if (gate.enter ()) {
+            boolean async = false;
+            try {
+                async = dispatch (request, response);
+            } finally {
+                // 异步请求在完成时离开闸门
+                if (!async) {
+                    gate.leave ();
+                }
+            }
+        } else {
+            // 模块正在停止，不再接受新的请求
+            response.sendError (SC_SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /**
+     * @return 请求转为异步处理时返回 true
+     */
+    private boolean dispatch (HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
         String method   = request.getMethod ().toLowerCase ();
         String pathInfo = request.getPathInfo ();
         if (StringUtil.isEmpty (pathInfo)) {
             response.setStatus (SC_NOT_FOUND);
-            return;
+            return false;
         }
 
         Map<String, String> values = new HashMap<> ();
         WebMethodRef ref = scanner.match (pathInfo, method, values);
         if (ref == null) {
             response.setStatus (SC_NOT_FOUND);
-            return;
+            return false;
         }
 
-        Object value;
-        Gson g = GsonHelper.getGson ();
+        RouteMetrics metrics = ref.metrics;
+        long start = metrics == null ? 0 : metrics.enter ();
+        boolean async = false;
         try {
-            if (ref.parameters == null || ref.parameters.isEmpty ()) {
-                value = ref.invoke ();
-            } else {
-                Object[] args = parseParameters (request, response, ref, values);
-                value = ref.invoke (args);
+            async = execute (request, response, ref, values, start);
+            return async;
+        } finally {
+            // 异步请求在完成时记录
+            if (!async && metrics != null) {
+                metrics.leave (start, ResponseWriter.take ());
             }
+        }
+    }
 
-            if (StringUtil.isEmpty (ref.contentType)) {
-                ref.contentType = "application/json;charset=utf-8";
-            }
-            response.setContentType (ref.contentType);
-            if (ref.contentType.contains ("json")) {
-                if (ref.wrapped) {
-                    WebJsonResult wjr = new WebJsonResult (0, "success", value);
-                    g.toJson (wjr, response.getWriter ());
-                } else if (value instanceof ResponseEntity) {
-                    writeResponseEntity (response, (ResponseEntity<?>) value, g);
-                } else if (value != null) {
-                    g.toJson (value, response.getWriter ());
+    /**
+     * 绑定参数，调用处理方法并输出结果
+     * @param start 开始处理的时间，用于异步请求完成时记录耗时
+     * @return 请求转为异步处理时返回 true
+     * @since 1.1.0
+     */
+    private boolean execute (HttpServletRequest request, HttpServletResponse response, WebMethodRef ref,
+                             Map<String, String> values, long start) throws ServletException, IOException {
+        Object[] args = null;
+        if (ref.parameters != null && !ref.parameters.isEmpty ()) {
+            try {
+                args = parseParameters (request, response, ref, values);
+            } catch (RequestBody.PayloadTooLargeException ex) {
+                logger.warn ("{}: {}", request.getPathInfo (), ex.getMessage ());
+                if (ref.metrics != null) {
+                    ref.metrics.error (SC_REQUEST_ENTITY_TOO_LARGE);
                 }
-            } else if (value instanceof ResponseEntity) {
-                writeResponseEntity (response, (ResponseEntity<?>) value, g);
-            } else if (value != null) {
-                response.getWriter ().write (value.toString ());
+                response.sendError (SC_REQUEST_ENTITY_TOO_LARGE);
+                return false;
             }
+        }
+        if (StringUtil.isEmpty (ref.contentType)) {
+            ref.contentType = "application/json;charset=utf-8";
+        }
+
+        String key = null;
+        if (ref.cache != null) {
+            key = ref.cache.key (args);
+            ResponseCache.Entry entry = ref.cache.get (key);
+            if (entry != null) {
+                // 命中缓存，不调用处理方法
+                ResponseWriter.count (writeCached (request, response, entry));
+                return false;
+            }
+        }
+
+        Gson g = GsonHelper.getGson ();
+        if (ref.blocking && dispatcher != null && dispatcher.isEnabled () && request.isAsyncSupported ()) {
+            // 阻塞式的处理方法交给执行器，释放连接器线程
+            AsyncResponse async = new AsyncResponse (request, response, ref, g, start, key);
+            Object[] arguments = args;
+            try {
+                dispatcher.execute (() -> {
+                    try {
+                        async.resolve (arguments == null ? ref.invoke () : ref.invoke (arguments));
+                    } catch (Throwable t) {
+                        async.finish (null, t);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                async.finish (null, ex);
+            }
+            return true;
+        }
+
+        Object value;
+        try {
+            value = args == null ? ref.invoke () : ref.invoke (args);
         } catch (InvocationTargetException ite) {
             Throwable t = ite.getCause ();
-            logger.warn (t.getMessage (), t);
-            if (ref.contentType.contains ("json")) {
-                if (t instanceof RestfulException) {
-                    handleRestfulException (response, (RestfulException) t, g);
-                } else {
-                    throw new ServletException (t);
+            if (!handleError (response, ref, t, g)) {
+                throw new ServletException (t);
+            }
+            return false;
+        }
+        if (value instanceof CompletionStage) {
+            if (request.isAsyncSupported ()) {
+                new AsyncResponse (request, response, ref, g, start, key).resolve (value);
+                return true;
+            }
+            // 过滤器链中有不支持异步的环节，只能在当前线程上等待结果
+            if (!asyncWarned) {
+                asyncWarned = true;
+                logger.warn ("{}: async is not supported by the request, waiting for the CompletionStage on the connector thread", ref.pattern);
+            }
+            try {
+                value = await ((CompletionStage<?>) value);
+            } catch (TimeoutException ex) {
+                logger.warn ("{}: async request timeout", ref.pattern);
+                if (ref.metrics != null) {
+                    ref.metrics.error (SC_SERVICE_UNAVAILABLE);
                 }
-            } else {
-                if (t instanceof RestfulException) {
-                    RestfulException re = (RestfulException) t;
-                    if (re.code >= 300 && re.code < 600) {
-                        response.setStatus (re.code);
-                    }
-                    response.getWriter ().write (re.getMessage ());
-                } else {
+                response.sendError (SC_SERVICE_UNAVAILABLE);
+                return false;
+            } catch (ExecutionException ex) {
+                Throwable t = unwrap (ex);
+                if (!handleError (response, ref, t, g)) {
                     throw new ServletException (t);
                 }
+                return false;
+            }
+        }
+        respond (request, response, ref, key, value, g);
+        return false;
+    }
+
+    /**
+     * 在当前线程上等待处理方法返回的 {@link CompletionStage}，最多等待异步请求的超时时间
+     * @since 1.1.0
+     */
+    private Object await (CompletionStage<?> stage) throws ExecutionException, TimeoutException, ServletException {
+        long timeout = dispatcher == null ? 0 : dispatcher.getTimeout ();
+        try {
+            return timeout > 0 ?
+                    stage.toCompletableFuture ().get (timeout, TimeUnit.MILLISECONDS) :
+                    stage.toCompletableFuture ().get ();
+        } catch (InterruptedException ex) {
+            Thread.currentThread ().interrupt ();
+            throw new ServletException (ex);
+        }
+    }
+
+    /** @since 1.1.0 */
+    private static Throwable unwrap (Throwable t) {
+        while ((t instanceof CompletionException || t instanceof ExecutionException ||
+                t instanceof InvocationTargetException) && t.getCause () != null) {
+            t = t.getCause ();
+        }
+        return t;
+    }
+
+    /**
+     * 输出处理方法的结果。声明了缓存的路由先把结果写入内存，状态码为 200 时放入缓存
+     * @param key 缓存键，路由没有声明缓存时为 null
+     * @since 1.1.0
+     */
+    private void respond (HttpServletRequest request, HttpServletResponse response, WebMethodRef ref,
+                          String key, Object value, Gson g) throws IOException {
+        if (key == null) {
+            writeValue (response, ref, value, g);
+            return;
+        }
+        BufferedResponse buffered = new BufferedResponse (response);
+        writeValue (buffered, ref, value, g);
+        byte[] body = buffered.toByteArray ();
+        // 处理方法拿到的是原始的 response，状态码只能从原始的 response 上读取
+        if (response.getStatus () == SC_OK) {
+            writeCached (request, response, ref.cache.put (key, body, response.getContentType ()));
+        } else if (!response.isCommitted ()) {
+            response.setContentLength (body.length);
+            response.getOutputStream ().write (body);
+        }
+    }
+
+    /**
+     * 输出缓存的响应，请求的 {@code If-None-Match} 匹配时返回 304
+     * @return 输出的字节数
+     * @since 1.1.0
+     */
+    private int writeCached (HttpServletRequest request, HttpServletResponse response, ResponseCache.Entry entry) throws IOException {
+        response.setHeader ("ETag", entry.etag);
+        if (entry.matches (request.getHeader ("If-None-Match"))) {
+            response.setStatus (SC_NOT_MODIFIED);
+            return 0;
+        }
+        response.setContentType (entry.contentType);
+        response.setContentLength (entry.body.length);
+        response.getOutputStream ().write (entry.body);
+        return entry.body.length;
+    }
+
+    /**
+     * 按处理方法声明的 content type 输出结果
+     * @since 1.1.0
+     */
+    private void writeValue (HttpServletResponse response, WebMethodRef ref, Object value, Gson g) throws IOException {
+        response.setContentType (ref.contentType);
+        if (ref.contentType.contains ("json")) {
+            if (ref.wrapped) {
+                writeResult (response, g, 0, "success", value);
+            } else if (value instanceof ResponseEntity) {
+                writeResponseEntity (response, (ResponseEntity<?>) value, g);
+            } else if (value != null) {
+                writeJson (response, g, value);
             }
+        } else if (value instanceof ResponseEntity) {
+            writeResponseEntity (response, (ResponseEntity<?>) value, g);
+        } else if (value != null) {
+            writeText (response, value.toString ());
         }
     }
 
+    /**
+     * 输出处理方法抛出的 {@link RestfulException}
+     * @return 异常已处理时返回 true，其他异常返回 false，由调用方决定如何响应
+     * @since 1.1.0
+     */
+    private boolean handleError (HttpServletResponse response, WebMethodRef ref, Throwable t, Gson g) throws IOException {
+        logger.warn (t.getMessage (), t);
+        if (!(t instanceof RestfulException)) {
+            if (ref.metrics != null) {
+                ref.metrics.error (RouteMetrics.UNKNOWN_ERROR);
+            }
+            return false;
+        }
+        RestfulException re = (RestfulException) t;
+        if (ref.metrics != null) {
+            ref.metrics.error (re.code);
+        }
+        response.setContentType (ref.contentType);
+        if (ref.contentType.contains ("json")) {
+            handleRestfulException (response, re, g);
+        } else {
+            if (re.code >= 300 && re.code < 600) {
+                response.setStatus (re.code);
+            }
+            writeText (response, re.getMessage ());
+        }
+        return true;
+    }
+
     private void writeResponseEntity (HttpServletResponse response, ResponseEntity<?> entity, Gson g) throws IOException {
         response.setStatus (entity.getStatus ());
         Object o = entity.getData ();
         if (o != null) {
-            response.getWriter ().write (g.toJson (o));
+            writeJson (response, g, o);
         } else if (!StringUtil.isEmpty (entity.getMessage ())) {
-            response.getWriter ().write (entity.getMessage ());
+            writeText (response, entity.getMessage ());
         }
     }
 
@@ -122,215 +367,185 @@ public class ApiServlet extends HttpServlet {
         if (code >= 300 && code < 600) {
             response.setStatus (code);
         }
-        WebJsonResult wjr = new WebJsonResult (code, re.getMessage (), null);
-        g.toJson (wjr, response.getWriter ());
+        writeResult (response, g, code, re.getMessage (), null);
     }
 
-    private Object[] parseParameters (HttpServletRequest request, HttpServletResponse response, WebMethodRef ref, Map<String, String> values) throws IOException {
-        Object[] args = new Object[ref.parameters.size ()];
-        Class<?>[] types = ref.method.getParameterTypes ();
-        for (int i = 0; i < ref.parameters.size (); i ++) {
-            WebParamRef wp = ref.parameters.get (i);
-            Class<?> type = types [i];
-            if (wp == null || wp.internal) {
-                if (type == ServletContext.class) {
-                    args[i] = getServletContext ();
-                } else if (type == HttpServletRequest.class) {
-                    args[i] = request;
-                } else if (type == HttpServletResponse.class) {
-                    args[i] = response;
-                } else if (type == HttpSession.class) {
-                    args[i] = request.getSession ();
-                } else {
-                    throw new IllegalArgumentException ("unsupported internal type: " + type);
-                }
-            } else {
-                String temp;
-                switch (wp.location) {
-                    case QueryString:
-                        temp = request.getParameter (wp.name);
-                        if (StringUtil.isEmpty (temp) && isNotEmpty (wp.defaultValue)) {
-                            temp = wp.defaultValue;
-                        }
-                        break;
-                    case Body:
-                        String contentType = request.getContentType ();
-                        if (contentType.contains ("json")) {
-                            temp = new String (IOUtil.read (request.getInputStream ()));
-                        } else {
-                            temp = request.getParameter (wp.name);
-                        }
-                        break;
-                    case Path:
-                        temp = values.get (wp.name);
-                        break;
-                    case Header:
-                        temp = request.getHeader (wp.name);
-                        if (StringUtil.isEmpty (temp) && isNotEmpty (wp.defaultValue)) {
-                            temp = wp.defaultValue;
-                        }
-                        break;
-                    // @since 1.1.0
-                    case Internal:
-                    case ContextAttribute:
-                    case RequestAttribute:
-                    case SessionAttribute:
-                        temp = "0";
-                        break;
-
-                    case Cookie:
-                        temp = getFromCookie (request, wp.name);
-                        break;
-
-                    default:
-                        throw new IllegalArgumentException ("unknown location: " + wp.location);
-                }
-
-                Object o;
-                if (wp.type == null) {
-                    // 视为 raw
-                    Class<?> parameterType = ref.method.getParameterTypes ()[i];
-                    args[i] = translate (temp, parameterType);
-                } else {
-                    switch (wp.type) {
-                        case string:
-                            args[i] = temp;
-                            break;
-
-                        case integer:
-                            args[i] = Integer.parseInt (temp);
-                            break;
-
-                        case long_integer:
-                            args[i] = Long.parseLong (temp);
-                            break;
-
-                        case bool:
-                            args[i] = Boolean.parseBoolean (temp);
-                            break;
-
-                        case datetime:
-                            try {
-                                args[i] = new SimpleDateFormat ("yyyy-MM-dd HH:mm:ss").parse (temp);
-                            } catch (ParseException pe) {
-                                try {
-                                    args[i] = new SimpleDateFormat ("yyyy-MM-dd").parse (temp);
-                                } catch (ParseException ex) {
-                                    throw new RuntimeException (ex);
-                                }
-                            }
-                            break;
-
-                        case raw:
-                            Class<?> parameterType = ref.method.getParameterTypes ()[i];
-                            args[i] = translate (temp, parameterType);
-                            break;
-                        // @since 1.1.0
-                        case request_attribute:
-                            o = request.getAttribute (wp.name);
-                            if (o == null && !wp.nullable) {
-                                throw new RuntimeException ("parameter [request." + wp.name + "] needs value, but meet null!");
-                            }
-                            args[i] = o;
-                            break;
-                        // @since 1.1.0
-                        case session_attribute:
-                            o = request.getSession ().getAttribute (wp.name);
-                            if (o == null && !wp.nullable) {
-                                throw new RuntimeException ("parameter [session." + wp.name + "] needs value, but meet null!");
-                            }
-                            args[i] = o;
-                            break;
-                        case context_attribute:
-                            o = request.getServletContext ().getAttribute (wp.name);
-                            if (o == null && !wp.nullable) {
-                                throw new RuntimeException ("parameter [session." + wp.name + "] needs value, but meet null!");
-                            }
-                            args[i] = o;
-                            break;
-                    }
-                }
-            }
+    /**
+     * 将对象序列化为 json 直接写入响应
+     * @since 1.1.0
+     */
+    private void writeJson (HttpServletResponse response, Gson g, Object value) throws IOException {
+        ResponseWriter writer = ResponseWriter.open (response);
+        try {
+            g.toJson (value, value.getClass (), g.newJsonWriter (writer));
+        } catch (IOException | RuntimeException ex) {
+            writer.discard ();
+            throw ex;
         }
-        return args;
+        writer.close ();
     }
 
-    private String getFromCookie (HttpServletRequest request, String name) {
-        Cookie[] cookies = request.getCookies ();
-        if (cookies != null) {
-            for (Cookie cookie : cookies) {
-                if (name.equals (cookie.getName ())) {
-                    return cookie.getValue ();
-                }
+    /**
+     * 写出和 {@link WebJsonResult} 序列化结果相同的信封，但不创建中间对象
+     * @since 1.1.0
+     */
+    private void writeResult (HttpServletResponse response, Gson g, int code, String message, Object result) throws IOException {
+        ResponseWriter writer = ResponseWriter.open (response);
+        try {
+            JsonWriter json = g.newJsonWriter (writer);
+            boolean nulls = json.getSerializeNulls ();
+            FieldNamingStrategy naming = g.fieldNamingStrategy ();
+            json.beginObject ();
+            json.name (naming.translateName (RESULT_CODE)).value (code);
+            if (message != null || nulls) {
+                json.name (naming.translateName (RESULT_MESSAGE)).value (message);
             }
+            if (result != null) {
+                json.name (naming.translateName (RESULT_DATA));
+                g.toJson (result, result.getClass (), json);
+            } else if (nulls) {
+                json.name (naming.translateName (RESULT_DATA)).nullValue ();
+            }
+            json.endObject ();
+            json.flush ();
+        } catch (IOException | RuntimeException ex) {
+            writer.discard ();
+            throw ex;
         }
-        return "";
+        writer.close ();
     }
 
-    private Object translate (String expression, Class<?> type) {
-        if (type == int.class || (type == Integer.class && !StringUtil.isEmpty (expression))) {
-            return Integer.parseInt (expression);
+    /** @since 1.1.0 */
+    private void writeText (HttpServletResponse response, String text) throws IOException {
+        if (text != null) {
+            ResponseWriter writer = ResponseWriter.open (response);
+            writer.write (text);
+            writer.close ();
         }
+    }
 
-        if (type == byte.class || (type == Byte.class && !StringUtil.isEmpty (expression))) {
-            return Byte.parseByte (expression);
-        }
-        if (type == char.class || (type == Character.class && !StringUtil.isEmpty (expression))) {
-            return expression.isEmpty () ? '\u0000' : expression.charAt (0);
-        }
-        if (type == short.class || (type == Short.class && !StringUtil.isEmpty (expression))) {
-            return Short.parseShort (expression);
-        }
-        if (type == long.class || (type == Long.class && !StringUtil.isEmpty (expression))) {
-            return Long.parseLong (expression);
-        }
-        if (type == boolean.class || (type == Boolean.class && !StringUtil.isEmpty (expression))) {
-            return Boolean.parseBoolean (expression);
-        }
-        if (type == float.class || (type == Float.class && !StringUtil.isEmpty (expression))) {
-            return Float.parseFloat (expression);
+    private Object[] parseParameters (HttpServletRequest request, HttpServletResponse response, WebMethodRef ref, Map<String, String> values) throws IOException {
+        ArgumentBinder[] binders = ref.binders;
+        Object[] args = new Object[binders.length];
+        RequestBody body = new RequestBody (request, maxBodySize);
+        for (int i = 0; i < binders.length; i ++) {
+            args[i] = binders[i].bind (request, response, values, body);
         }
-        if (type == double.class || (type == Double.class && !StringUtil.isEmpty (expression))) {
-            return Double.parseDouble (expression);
+        return args;
+    }
+
+    /**
+     * 一个异步处理的请求.
+     *
+     * <p>结果、异常和超时三者中只有最先到达的一个会写入响应；
+     * 无论以哪种方式结束，都只离开闸门、记录运行指标一次</p>
+     *
+     * @since 1.1.0
+     */
+    private final class AsyncResponse implements AsyncListener {
+        private final AsyncContext context;
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final WebMethodRef ref;
+        private final Gson g;
+        private final long start;
+        /** 缓存键，路由没有声明缓存时为 null */
+        private final String key;
+        /** 响应是否已被结果、异常或超时占用 */
+        private final AtomicBoolean claimed  = new AtomicBoolean ();
+        private final AtomicBoolean released = new AtomicBoolean ();
+
+        AsyncResponse (HttpServletRequest request, HttpServletResponse response, WebMethodRef ref, Gson g, long start, String key) {
+            this.request  = request;
+            this.response = response;
+            this.ref      = ref;
+            this.g        = g;
+            this.start    = start;
+            this.key      = key;
+
+            context = request.startAsync (request, response);
+            if (dispatcher != null) {
+                context.setTimeout (dispatcher.getTimeout ());
+            }
+            context.addListener (this);
         }
-        if (type.isAssignableFrom (String.class)) {
-            return expression;
+
+        /**
+         * 处理方法的返回值，若是 {@link CompletionStage} 则在其完成时输出
+         */
+        void resolve (Object value) {
+            if (value instanceof CompletionStage) {
+                ((CompletionStage<?>) value).whenComplete (this::finish);
+            } else {
+                finish (value, null);
+            }
         }
-        if (type == BigDecimal.class && !StringUtil.isEmpty (expression)) {
-            return new BigDecimal (expression);
+
+        void finish (Object value, Throwable error) {
+            if (!claimed.compareAndSet (false, true)) {
+                return;
+            }
+            try {
+                if (error == null) {
+                    respond (request, response, ref, key, value, g);
+                } else {
+                    Throwable t = unwrap (error);
+                    if (!handleError (response, ref, t, g) && !response.isCommitted ()) {
+                        response.sendError (SC_INTERNAL_SERVER_ERROR);
+                    }
+                }
+            } catch (Exception ex) {
+                logger.warn (ex.getMessage (), ex);
+            } finally {
+                try {
+                    context.complete ();
+                } catch (IllegalStateException ex) {
+                    // 请求已经因超时或出错而结束
+                    logger.warn ("{}: {}", ref.pattern, ex.getMessage ());
+                }
+                release ();
+            }
         }
-        if (type == BigInteger.class && !StringUtil.isEmpty (expression)) {
-            return new BigInteger (expression);
+
+        @Override
+        public void onTimeout (AsyncEvent event) throws IOException {
+            if (claimed.compareAndSet (false, true)) {
+                logger.warn ("{}: async request timeout", ref.pattern);
+                if (ref.metrics != null) {
+                    ref.metrics.error (SC_SERVICE_UNAVAILABLE);
+                }
+                if (!response.isCommitted ()) {
+                    response.sendError (SC_SERVICE_UNAVAILABLE);
+                }
+                context.complete ();
+            }
+            release ();
         }
-        if (type == Date.class && !StringUtil.isEmpty (expression)) {
-            return toDate (expression);
+
+        @Override
+        public void onError (AsyncEvent event) {
+            claimed.set (true);
+            release ();
         }
-        if (type == java.sql.Date.class && !StringUtil.isEmpty (expression)) {
-            return new java.sql.Date (toDate (expression).getTime ());
+
+        @Override
+        public void onComplete (AsyncEvent event) {
+            release ();
         }
-        if (type == java.sql.Timestamp.class && !StringUtil.isEmpty (expression)) {
-            return new java.sql.Timestamp (toDate (expression).getTime ());
+
+        @Override
+        public void onStartAsync (AsyncEvent event) {
         }
-        return StringUtil.isEmpty (expression) ? null : GsonHelper.getGson ().fromJson (expression, type);
-    }
 
-    private Date toDate (String expression) {
-        try {
-            return new SimpleDateFormat ("yyyy-MM-dd HH:mm:ss").parse (expression);
-        } catch (ParseException ex) {
-            try {
-                return new SimpleDateFormat ("yyyy-MM-dd").parse (expression);
-            } catch (ParseException e) {
-                throw new RuntimeException (e);
+        private void release () {
+            if (released.compareAndSet (false, true)) {
+                if (ref.metrics != null) {
+                    ref.metrics.leave (start, ResponseWriter.take ());
+                }
+                if (gate != null) {
+                    gate.leave ();
+                }
             }
         }
     }
-
-    private boolean isEmpty (String value) {
-        return StringUtil.isEmpty (value) || "$$EMPTY$$".equals (value);
-    }
-
-    private boolean isNotEmpty (String value) {
-        return !isEmpty (value);
-    }
 }
\ No newline at end of file
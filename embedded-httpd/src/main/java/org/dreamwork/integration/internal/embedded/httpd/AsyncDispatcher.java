@@ -0,0 +1,139 @@
+package org.dreamwork.integration.internal.embedded.httpd;
+
+import org.dreamwork.config.IConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步 restful 请求的执行设置.
+ *
+ * <p>声明了 {@link org.dreamwork.integration.httpd.annotation.ARestfulAPI#blocking() blocking} 的处理方法
+ * 通过 servlet 3 的异步模式交给这里的执行器运行，不再占用 tomcat 的连接器线程。执行器由配置项
+ * {@code http.service.dispatcher} 选择：</p>
+ * <ul>
+ * <li>{@code none} - 默认值，不使用执行器，阻塞式处理方法仍在连接器线程上运行</li>
+ * <li>{@code pool} - 固定大小的线程池，线程数由 {@code http.service.dispatcher.threads} 指定</li>
+ * <li>{@code virtual} - 每个请求一个虚拟线程。运行时不支持虚拟线程时退化为 {@code pool}</li>
+ * </ul>
+ * <p>异步请求（包括返回 {@link java.util.concurrent.CompletionStage} 的处理方法）的超时时间由
+ * {@code http.service.async.timeout} 指定，单位毫秒</p>
+ *
+ * @since 1.1.0
+ */
+public class AsyncDispatcher {
+    private static final String KEY_DISPATCHER = "http.service.dispatcher";
+    private static final String KEY_THREADS    = "http.service.dispatcher.threads";
+    private static final String KEY_TIMEOUT    = "http.service.async.timeout";
+
+    private static final Logger logger = LoggerFactory.getLogger (AsyncDispatcher.class);
+
+    /** 阻塞式处理方法的执行器，可能为 null */
+    private final ExecutorService executor;
+    private final long timeout;
+
+    private AsyncDispatcher (ExecutorService executor, long timeout) {
+        this.executor = executor;
+        this.timeout  = timeout;
+    }
+
+    public static AsyncDispatcher create (IConfiguration conf) {
+        String type = conf.getString (KEY_DISPATCHER, "none").trim ().toLowerCase ();
+        long timeout = conf.getLong (KEY_TIMEOUT, 30000L);
+        ExecutorService executor = null;
+        switch (type) {
+            case "virtual":
+                executor = virtual ();
+                if (executor != null) {
+                    break;
+                }
+                logger.warn ("virtual threads are not supported by current jvm, fallback to a thread pool");
+                // fall through
+            case "pool":
+                int threads = conf.getInt (KEY_THREADS, Runtime.getRuntime ().availableProcessors () * 8);
+                executor = Executors.newFixedThreadPool (threads, new ThreadFactory () {
+                    private final AtomicInteger counter = new AtomicInteger ();
+
+                    @Override
+                    public Thread newThread (Runnable r) {
+                        Thread t = new Thread (r, "api-dispatcher-" + counter.incrementAndGet ());
+                        t.setDaemon (true);
+                        return t;
+                    }
+                });
+                break;
+            case "none":
+                break;
+            default:
+                logger.warn ("unknown dispatcher: {}, blocking handlers will run on connector threads", type);
+        }
+        if (logger.isTraceEnabled ()) {
+            logger.trace ("api dispatcher: {}, async timeout: {} ms", executor == null ? "none" : type, timeout);
+        }
+        return new AsyncDispatcher (executor, timeout);
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器，以便在 java 8 下编译
+     */
+    private static ExecutorService virtual () {
+        try {
+            return (ExecutorService) Executors.class.getMethod ("newVirtualThreadPerTaskExecutor").invoke (null);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * 是否有执行阻塞式处理方法的执行器
+     * @return 有执行器时返回 true
+     */
+    public boolean isEnabled () {
+        return executor != null;
+    }
+
+    /**
+     * 在执行器上运行任务，任务使用提交时线程的 context classloader
+     * @param task 任务
+     */
+    public void execute (Runnable task) {
+        ClassLoader loader = Thread.currentThread ().getContextClassLoader ();
+        executor.execute (() -> {
+            Thread current = Thread.currentThread ();
+            ClassLoader saved = current.getContextClassLoader ();
+            current.setContextClassLoader (loader);
+            try {
+                task.run ();
+            } finally {
+                current.setContextClassLoader (saved);
+            }
+        });
+    }
+
+    /**
+     * 异步请求的超时时间
+     * @return 超时时间，单位毫秒
+     */
+    public long getTimeout () {
+        return timeout;
+    }
+
+    public void shutdown () {
+        if (executor != null) {
+            executor.shutdown ();
+            try {
+                if (!executor.awaitTermination (5, TimeUnit.SECONDS)) {
+                    executor.shutdownNow ();
+                }
+            } catch (InterruptedException ex) {
+                executor.shutdownNow ();
+                Thread.currentThread ().interrupt ();
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.dreamwork.integration.internal.embedded.httpd;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 把响应内容写入内存的 response，用于生成可缓存的响应.
+ *
+ * <p>状态码、content type 和 http 头照常设置到被包装的响应上，只有内容被截留，
+ * 由调用方取出后自行写出</p>
+ *
+ * @since 1.1.0
+ */
+final class BufferedResponse extends HttpServletResponseWrapper {
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream ();
+    private ServletOutputStream stream;
+    private PrintWriter writer;
+
+    BufferedResponse (HttpServletResponse response) {
+        super (response);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream () {
+        if (writer != null) {
+            throw new IllegalStateException ("getWriter() has already been called for this response");
+        }
+        if (stream == null) {
+            stream = new ServletOutputStream () {
+                @Override
+                public void write (int b) {
+                    buffer.write (b);
+                }
+
+                @Override
+                public void write (byte[] b, int off, int len) {
+                    buffer.write (b, off, len);
+                }
+
+                @Override
+                public boolean isReady () {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener (WriteListener listener) {
+                    throw new UnsupportedOperationException ();
+                }
+            };
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter () {
+        if (stream != null) {
+            throw new IllegalStateException ("getOutputStream() has already been called for this response");
+        }
+        if (writer == null) {
+            String encoding = getCharacterEncoding ();
+            Charset charset = encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName (encoding);
+            writer = new PrintWriter (new OutputStreamWriter (buffer, charset));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength (int len) {
+        // 长度由调用方在写出时设置
+    }
+
+    @Override
+    public void setContentLengthLong (long len) {
+    }
+
+    @Override
+    public void flushBuffer () {
+        if (writer != null) {
+            writer.flush ();
+        }
+    }
+
+    /**
+     * @return 截留的响应内容
+     */
+    byte[] toByteArray () {
+        if (writer != null) {
+            writer.flush ();
+        }
+        return buffer.toByteArray ();
+    }
+}
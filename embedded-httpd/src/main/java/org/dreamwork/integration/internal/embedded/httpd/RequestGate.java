@@ -0,0 +1,74 @@
+package org.dreamwork.integration.internal.embedded.httpd;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模块的请求闸门.
+ *
+ * <p>记录一个 web 模块正在处理的 restful 请求数量。模块停止前闸门被关闭，此后的新请求将被拒绝，
+ * 而已经进入的请求可以在排空窗口内处理完成</p>
+ *
+ * @since 1.1.0
+ */
+public class RequestGate {
+    private final AtomicInteger inflight = new AtomicInteger ();
+    private volatile boolean closed;
+
+    /**
+     * 尝试进入闸门
+     * @return 若闸门已关闭返回 {@code false}，此时调用者不应该处理这个请求
+     */
+    public boolean enter () {
+        if (closed) {
+            return false;
+        }
+        inflight.incrementAndGet ();
+        if (closed) {
+            // 在关闭的同时进入的请求，放弃
+            leave ();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 离开闸门。必须和成功的 {@link #enter()} 成对调用
+     */
+    public void leave () {
+        if (inflight.decrementAndGet () == 0 && closed) {
+            synchronized (this) {
+                notifyAll ();
+            }
+        }
+    }
+
+    /**
+     * 关闭闸门，并等待所有已进入的请求离开
+     * @param timeout 最长等待时间，单位毫秒
+     * @return 若所有请求都已离开返回 {@code true}，超时返回 {@code false}
+     */
+    public boolean close (long timeout) {
+        closed = true;
+        long deadline = System.currentTimeMillis () + timeout;
+        synchronized (this) {
+            long remain;
+            while (inflight.get () > 0 && (remain = deadline - System.currentTimeMillis ()) > 0) {
+                try {
+                    wait (remain);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread ().interrupt ();
+                    break;
+                }
+            }
+        }
+        return inflight.get () == 0;
+    }
+
+    public int getInflight () {
+        return inflight.get ();
+    }
+
+    public boolean isClosed () {
+        return closed;
+    }
+}
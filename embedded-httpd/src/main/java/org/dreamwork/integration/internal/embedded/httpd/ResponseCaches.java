@@ -0,0 +1,63 @@
+package org.dreamwork.integration.internal.embedded.httpd;
+
+import org.dreamwork.integration.internal.embedded.httpd.support.ResponseCache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 所有 web 应用的 restful api 响应缓存，按 context path 和缓存名称索引，用于使缓存失效.
+ *
+ * @since 1.1.0
+ */
+public class ResponseCaches {
+    /** context path -&gt; 缓存名称 -&gt; 使用这个名称的所有缓存 */
+    private final Map<String, Map<String, List<ResponseCache>>> contexts = new ConcurrentHashMap<> ();
+
+    /**
+     * 登记 web 应用中声明了缓存的路由
+     * @param contextPath web 应用的 context path
+     * @param scanner     web 应用的 restful api
+     */
+    public void register (String contextPath, ServiceScanner scanner) {
+        Map<String, List<ResponseCache>> caches = new HashMap<> ();
+        scanner.forEach ((method, ref) -> {
+            if (ref.cache != null) {
+                caches.computeIfAbsent (ref.cache.name, name -> new ArrayList<> ()).add (ref.cache);
+            }
+        });
+        if (!caches.isEmpty ()) {
+            contexts.put (contextPath, caches);
+        }
+    }
+
+    public void unregister (String contextPath) {
+        contexts.remove (contextPath);
+    }
+
+    /**
+     * 使缓存失效
+     * @param contextPath web 应用的 context path
+     * @param name        缓存名称，为 null 时清空 web 应用的所有缓存
+     * @param key         组成缓存键的参数值，为空时清空指定缓存的所有条目
+     */
+    public void invalidate (String contextPath, String name, Object... key) {
+        Map<String, List<ResponseCache>> caches = contexts.get (contextPath);
+        if (caches == null) {
+            return;
+        }
+        if (name == null) {
+            caches.values ().forEach (list -> list.forEach (ResponseCache::invalidate));
+        } else {
+            List<ResponseCache> list = caches.get (name);
+            if (list != null) {
+                for (ResponseCache cache : list) {
+                    cache.invalidate (key);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package org.dreamwork.integration.internal.embedded.httpd;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 写响应内容的 {@link Writer}.
+ *
+ * <p>每个线程复用同一个实例及其缓冲区。内容不超过 {@link #LIMIT} 个字符时，全部缓冲后一次编码、
+ * 设置 {@code Content-Length} 并写入响应的输出流；超过时把已缓冲的内容和后续内容直接写到响应中，
+ * 不再设置 {@code Content-Length}，缓冲区也就不会随响应无限增长</p>
+ * <p>若处理方法已经通过 {@link HttpServletResponse#getWriter()} 写过内容，则继续使用那个 writer</p>
+ *
+ * @since 1.1.0
+ */
+final class ResponseWriter extends Writer {
+    /** 缓冲的最大字符数 */
+    static final int LIMIT = 16 * 1024;
+
+    private static final ThreadLocal<ResponseWriter> WRITERS = ThreadLocal.withInitial (ResponseWriter::new);
+
+    private char[] chars = new char[1024];
+    private int count;
+    private ByteBuffer bytes = ByteBuffer.allocate (1024);
+
+    private Charset charset;
+    private CharsetEncoder encoder;
+
+    private HttpServletResponse response;
+    /** 内容超过上限后直接写入的目标 */
+    private Writer sink;
+    /** 上次 {@link #take()} 以来输出的字节数，直接写入 sink 的部分按字符数计 @since 1.1.0 */
+    private long written;
+
+    private ResponseWriter () {}
+
+    /**
+     * 取得当前线程的 writer，开始写一个响应。必须在设置了 content type 之后调用，
+     * 写完后必须调用 {@link #close()}
+     * @param response http 响应
+     * @return 当前线程的 writer
+     */
+    static ResponseWriter open (HttpServletResponse response) {
+        ResponseWriter writer = WRITERS.get ();
+        writer.response = response;
+        writer.count    = 0;
+        writer.sink     = null;
+        String encoding = response.getCharacterEncoding ();
+        if (encoding == null) {
+            encoding = StandardCharsets.ISO_8859_1.name ();
+        }
+        if (writer.charset == null || !writer.charset.name ().equalsIgnoreCase (encoding)) {
+            writer.charset = Charset.forName (encoding);
+            writer.encoder = writer.charset.newEncoder ()
+                    .onMalformedInput (CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter (CodingErrorAction.REPLACE);
+        }
+        return writer;
+    }
+
+    /**
+     * 取出当前线程上次调用以来输出的字节数，并清零
+     * @return 字节数
+     * @since 1.1.0
+     */
+    static long take () {
+        ResponseWriter writer = WRITERS.get ();
+        long written = writer.written;
+        writer.written = 0;
+        return written;
+    }
+
+    /**
+     * 记录当前线程不经过 writer 直接输出的字节数，比如缓存的响应
+     * @param bytes 字节数
+     * @since 1.1.0
+     */
+    static void count (long bytes) {
+        WRITERS.get ().written += bytes;
+    }
+
+    @Override
+    public void write (int c) throws IOException {
+        if (sink != null) {
+            sink.write (c);
+            written ++;
+        } else {
+            reserve (1);
+            if (sink != null) {
+                sink.write (c);
+                written ++;
+            } else {
+                chars[count ++] = (char) c;
+            }
+        }
+    }
+
+    @Override
+    public void write (char[] buff, int off, int len) throws IOException {
+        if (sink == null) {
+            reserve (len);
+        }
+        if (sink != null) {
+            sink.write (buff, off, len);
+            written += len;
+        } else {
+            System.arraycopy (buff, off, chars, count, len);
+            count += len;
+        }
+    }
+
+    @Override
+    public void write (String str, int off, int len) throws IOException {
+        if (sink == null) {
+            reserve (len);
+        }
+        if (sink != null) {
+            sink.write (str, off, len);
+            written += len;
+        } else {
+            str.getChars (off, off + len, chars, count);
+            count += len;
+        }
+    }
+
+    @Override
+    public void flush () {
+        // 缓冲的内容在 close 时才写出，以便设置 Content-Length
+    }
+
+    /**
+     * 写出所有内容
+     * @throws IOException io exception
+     */
+    @Override
+    public void close () throws IOException {
+        try {
+            if (sink != null) {
+                sink.flush ();
+            } else if (count > 0) {
+                OutputStream out = stream ();
+                if (out == null) {
+                    response.getWriter ().write (chars, 0, count);
+                    written += count;
+                } else {
+                    encode ();
+                    response.setContentLength (bytes.remaining ());
+                    out.write (bytes.array (), 0, bytes.remaining ());
+                    written += bytes.remaining ();
+                }
+            }
+        } finally {
+            response = null;
+            sink     = null;
+            count    = 0;
+        }
+    }
+
+    /**
+     * 放弃已缓冲的内容，比如序列化中途出错时
+     */
+    void discard () {
+        response = null;
+        sink     = null;
+        count    = 0;
+    }
+
+    /** 保证缓冲区还能容纳 {@code length} 个字符，超过上限时转为直接写出 */
+    private void reserve (int length) throws IOException {
+        int required = count + length;
+        if (required > LIMIT) {
+            OutputStream out = stream ();
+            sink = out == null ? response.getWriter () : new OutputStreamWriter (out, charset);
+            sink.write (chars, 0, count);
+            written += count;
+            count = 0;
+        } else if (required > chars.length) {
+            chars = Arrays.copyOf (chars, Math.min (LIMIT, Math.max (required, chars.length << 1)));
+        }
+    }
+
+    private OutputStream stream () throws IOException {
+        try {
+            return response.getOutputStream ();
+        } catch (IllegalStateException ex) {
+            // 已经使用过 getWriter
+            return null;
+        }
+    }
+
+    private void encode () {
+        int capacity = (int) Math.ceil (count * (double) encoder.maxBytesPerChar ());
+        if (bytes.capacity () < capacity) {
+            bytes = ByteBuffer.allocate (capacity);
+        }
+        bytes.clear ();
+        encoder.reset ();
+        CharBuffer in = CharBuffer.wrap (chars, 0, count);
+        CoderResult result = encoder.encode (in, bytes, true);
+        if (result.isUnderflow ()) {
+            encoder.flush (bytes);
+        }
+        bytes.flip ();
+    }
+}
@@ -0,0 +1,130 @@
+package org.dreamwork.integration.internal.embedded.httpd;
+
+import org.dreamwork.integration.internal.embedded.httpd.support.WebMethodRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * 一个 http 方法下所有多段路由的分段前缀树.
+ *
+ * <p>每一段路径是树的一层，节点有三类子节点：</p>
+ * <ul>
+ * <li>静态段，按名称精确匹配</li>
+ * <li>含有 <code>${var}</code> 的段，匹配任意一段，并将整段的值作为参数 {@code var}</li>
+ * <li>位于最后的 {@code *}，匹配任意一段</li>
+ * </ul>
+ * <p>匹配时每一层依次尝试 静态段 &gt; 参数段 &gt; {@code *}，失败时回溯，
+ * 所以优先级是确定的，和路由注册的顺序无关。匹配过程不使用正则表达式，
+ * <code>${var}</code> 只在建树时解析一次</p>
+ *
+ * @since 1.1.0
+ */
+final class RouteTrie {
+    private static final Logger logger = LoggerFactory.getLogger (RouteTrie.class);
+
+    private final Node root = new Node ();
+
+    /**
+     * 将路由加入树中
+     * @param ref 路由，必须是多段路由，即 {@code ref.parts != null}
+     */
+    void add (WebMethodRef ref) {
+        List<String> parts = ref.parts;
+        String[] names = new String[parts.size ()];
+        Node node = root;
+        for (int i = 0, n = parts.size (); i < n; i ++) {
+            String part = parts.get (i);
+            if ("*".equals (part) && i == n - 1) {
+                node = node.wildcard == null ? (node.wildcard = new Node ()) : node.wildcard;
+            } else if (part.contains ("${")) {
+                Matcher m = WebMethodRef.PARSER.matcher (part);
+                if (m.matches ()) {
+                    names[i] = m.group (2);
+                }
+                node = node.capture == null ? (node.capture = new Node ()) : node.capture;
+            } else {
+                node = node.statics.computeIfAbsent (part, key -> new Node ());
+            }
+        }
+        if (node.route != null) {
+            logger.warn ("{} and {} are mapped to the same route, the later one is ignored.", node.route.pattern, ref.pattern);
+        } else {
+            node.route = ref;
+            node.names = names;
+        }
+    }
+
+    /**
+     * 匹配请求路径
+     * @param pathInfo   请求路径
+     * @param parsedArgs 用于接收路径参数
+     * @return 匹配的路由，没有匹配时返回 {@code null}
+     */
+    WebMethodRef match (String pathInfo, Map<String, String> parsedArgs) {
+        List<String> segments = split (pathInfo);
+        if (segments.isEmpty ()) {
+            return null;
+        }
+        Node node = find (root, segments, 0);
+        if (node == null) {
+            return null;
+        }
+        for (int i = 0; i < node.names.length; i ++) {
+            if (node.names[i] != null) {
+                parsedArgs.put (node.names[i], segments.get (i));
+            }
+        }
+        return node.route;
+    }
+
+    private Node find (Node node, List<String> segments, int index) {
+        if (index == segments.size ()) {
+            return node.route != null ? node : null;
+        }
+        String segment = segments.get (index);
+        Node next = node.statics.get (segment);
+        if (next != null && (next = find (next, segments, index + 1)) != null) {
+            return next;
+        }
+        if (node.capture != null && (next = find (node.capture, segments, index + 1)) != null) {
+            return next;
+        }
+        if (node.wildcard != null && index == segments.size () - 1 && node.wildcard.route != null) {
+            return node.wildcard;
+        }
+        return null;
+    }
+
+    /** 按 / 拆分路径，去掉空段和每段两端的空白 */
+    private static List<String> split (String path) {
+        List<String> segments = new ArrayList<> ();
+        int start = 0, length = path.length ();
+        while (start <= length) {
+            int end = path.indexOf ('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            String segment = path.substring (start, end).trim ();
+            if (!segment.isEmpty ()) {
+                segments.add (segment);
+            }
+            start = end + 1;
+        }
+        return segments;
+    }
+
+    private static final class Node {
+        final Map<String, Node> statics = new HashMap<> ();
+        Node capture, wildcard;
+
+        WebMethodRef route;
+        /** 每一段对应的参数名，不是参数段时为 null */
+        String[] names;
+    }
+}
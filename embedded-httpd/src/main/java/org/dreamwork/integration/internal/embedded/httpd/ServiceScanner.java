@@ -1,7 +1,11 @@
 package org.dreamwork.integration.internal.embedded.httpd;
 
+import org.dreamwork.integration.api.ClassIndex;
 import org.dreamwork.integration.api.IModuleContext;
+import org.dreamwork.integration.api.ScanResult;
+import org.dreamwork.integration.httpd.annotation.ACacheable;
 import org.dreamwork.integration.httpd.annotation.ARestfulAPI;
+import org.dreamwork.integration.internal.embedded.httpd.support.ResponseCache;
 import org.dreamwork.integration.internal.embedded.httpd.support.WebMethodRef;
 import org.dreamwork.util.CollectionCreator;
 import org.dreamwork.util.ResourceUtil;
@@ -11,6 +15,7 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 public class ServiceScanner {
@@ -20,6 +25,8 @@ public class ServiceScanner {
     private final IModuleContext context;
 
     private final Map<String, Map<String, WebMethodRef>> methods = new HashMap<> ();
+    /** http 方法 -> 多段路由的前缀树，在 scan 时建立 @since 1.1.0 */
+    private final Map<String, RouteTrie> routes = new HashMap<> ();
 
     public ServiceScanner (IModuleContext context, ClassLoader loader, String... packages) {
         this.context  = context;
@@ -28,20 +35,69 @@ public class ServiceScanner {
     }
 
     public void scan () throws Exception {
+        // 模块启动时已经记录了处理类的包，直接加载记录的类
+        ScanResult result = context.getScanResult ();
+        String annotation = ARestfulAPI.class.getName ();
+        ClassIndex index = null;
+        boolean indexLoaded = false;
         for (String packageName : this.packages) {
-            List<Class<?>> classes = ResourceUtil.getClasses (packageName, loader);
-            for (Class<?> type : classes) {
-                if (type.isAnnotationPresent (ARestfulAPI.class)) {
-                    scanClass (type);
+            if (result != null && result.hasCandidates (annotation, packageName)) {
+                scanClasses (result.getCandidateNames (annotation, packageName));
+                continue;
+            }
+
+            // 模块容器没有提供扫描结果
+            if (!indexLoaded) {
+                index = ClassIndex.load (loader);
+                indexLoaded = true;
+            }
+            if (index != null && index.covers (packageName)) {
+                // 有编译期索引，只加载索引中列出的类
+                scanClasses (index.getClassNames (ClassIndex.RESTFUL, packageName));
+            } else {
+                List<Class<?>> classes = ResourceUtil.getClasses (packageName, loader);
+                for (Class<?> type : classes) {
+                    if (type.isAnnotationPresent (ARestfulAPI.class)) {
+                        scanClass (type);
+                    }
                 }
             }
         }
     }
 
+    /**
+     * 加载并扫描候选的处理类
+     * @param names 类名
+     * @since 1.1.0
+     */
+    private void scanClasses (Collection<String> names) {
+        for (String name : names) {
+            Class<?> type;
+            try {
+                type = loader.loadClass (name);
+            } catch (ClassNotFoundException | LinkageError ex) {
+                logger.warn ("cannot load candidate class {}: {}", name, ex.getMessage ());
+                continue;
+            }
+            if (type.isAnnotationPresent (ARestfulAPI.class)) {
+                scanClass (type);
+            }
+        }
+    }
+
     public boolean isNotEmpty () {
         return !methods.isEmpty ();
     }
 
+    /**
+     * 遍历所有路由
+     * @param action 参数为 http 方法和路由
+     * @since 1.1.0
+     */
+    public void forEach (BiConsumer<String, WebMethodRef> action) {
+        methods.forEach ((method, map) -> map.values ().forEach (ref -> action.accept (method, ref)));
+    }
+
     public WebMethodRef match (String pathInfo, String method, Map<String, String> parsedArgs) {
         Map<String, WebMethodRef> map = methods.get (method);
         if (map == null) {
@@ -52,13 +108,9 @@ public class ServiceScanner {
             return map.get (pathInfo);
         }
 
-        for (WebMethodRef ref : map.values ()) {
-            if (ref.matches (pathInfo, parsedArgs)) {   // 更复杂的情况
-                return ref;
-            }
-        }
-
-        return null;
+        // 更复杂的情况
+        RouteTrie trie = routes.get (method);
+        return trie == null ? null : trie.match (pathInfo, parsedArgs);
     }
 
     private void scanClass (Class<?> type) {
@@ -143,12 +195,25 @@ public class ServiceScanner {
                     wmm.bean         = bean;
                     wmm.contentType  = api.contentType ();
                     wmm.wrapped      = api.wrapped ();
+                    wmm.blocking     = api.blocking ();
+                    // @since 1.1.0
+                    ACacheable cacheable = method.getAnnotation (ACacheable.class);
+                    if (cacheable != null) {
+                        if ("get".equals (httpMethod)) {
+                            wmm.cache = new ResponseCache (wmm, cacheable);
+                        } else {
+                            logger.warn ("{} {}: ACacheable only applies to GET apis, ignored.", httpMethod, pathInfo);
+                        }
+                    }
 
                     Map<String, WebMethodRef> map = this.methods.computeIfAbsent (httpMethod, name -> new HashMap<> ());
                     if (map.containsKey (pathInfo)) {
                         throw new IllegalArgumentException ("pattern " + pathInfo + " already mapped.");
                     }
                     map.put (pathInfo, wmm);
+                    if (wmm.parts != null) {
+                        routes.computeIfAbsent (httpMethod, name -> new RouteTrie ()).add (wmm);
+                    }
                     if (logger.isTraceEnabled ()) {
                         logger.trace (
                                 "a web mapped method is mapped: [{}] {} <=> {}",
@@ -0,0 +1,28 @@
+package org.dreamwork.integration.internal.embedded.httpd.support;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 从请求中取出一个 web 方法参数的值.
+ *
+ * <p>每个 {@link WebMethodRef} 在扫描时为每个参数生成一个绑定器（见 {@link WebMethodRef#binders}），
+ * 参数从哪里取、转换成什么类型都在这时确定下来，处理请求时只做这个参数真正需要的工作</p>
+ *
+ * @since 1.1.0
+ */
+@FunctionalInterface
+public interface ArgumentBinder {
+    /**
+     * 绑定参数
+     * @param request    http 请求
+     * @param response   http 响应
+     * @param parsedArgs 路径参数
+     * @param body       本次请求的请求体
+     * @return 参数值
+     * @throws IOException 读取请求体失败时抛出
+     */
+    Object bind (HttpServletRequest request, HttpServletResponse response, Map<String, String> parsedArgs, RequestBody body) throws IOException;
+}
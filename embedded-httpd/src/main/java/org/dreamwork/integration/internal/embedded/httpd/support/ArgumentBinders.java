@@ -0,0 +1,345 @@
+package org.dreamwork.integration.internal.embedded.httpd.support;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.dreamwork.gson.GsonHelper;
+import org.dreamwork.integration.httpd.support.ParameterLocation;
+import org.dreamwork.integration.httpd.support.ParameterType;
+import org.dreamwork.util.StringUtil;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.format.SignStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在扫描时为 web 方法的每个参数生成 {@link ArgumentBinder}.
+ *
+ * <p>参数的来源（查询串、路径、请求头 ...）和类型转换在这里一次性选定，
+ * 基本类型使用专门的转换器，其他类型预先取得 gson 的 {@link TypeAdapter}</p>
+ *
+ * @since 1.1.0
+ */
+final class ArgumentBinders {
+    /** yyyy-MM-dd @since 1.1.0 */
+    private static final DateTimeFormatter DATE = new DateTimeFormatterBuilder ()
+            .appendValue (ChronoField.YEAR, 1, 10, SignStyle.NORMAL).appendLiteral ('-')
+            .appendValue (ChronoField.MONTH_OF_YEAR, 1, 2, SignStyle.NORMAL).appendLiteral ('-')
+            .appendValue (ChronoField.DAY_OF_MONTH, 1, 2, SignStyle.NORMAL)
+            .toFormatter ()
+            .withResolverStyle (ResolverStyle.LENIENT);
+    /** yyyy-MM-dd HH:mm:ss @since 1.1.0 */
+    private static final DateTimeFormatter DATETIME = new DateTimeFormatterBuilder ()
+            .append (DATE).appendLiteral (' ')
+            .appendValue (ChronoField.HOUR_OF_DAY, 1, 2, SignStyle.NORMAL).appendLiteral (':')
+            .appendValue (ChronoField.MINUTE_OF_HOUR, 1, 2, SignStyle.NORMAL).appendLiteral (':')
+            .appendValue (ChronoField.SECOND_OF_MINUTE, 1, 2, SignStyle.NORMAL)
+            .toFormatter ()
+            .withResolverStyle (ResolverStyle.LENIENT);
+
+    private ArgumentBinders () {}
+
+    /**
+     * 为 web 方法的每个参数生成绑定器
+     * @param ref web 方法
+     * @return 和方法参数一一对应的绑定器。方法没有参数时返回空数组
+     */
+    static ArgumentBinder[] compile (WebMethodRef ref) {
+        List<WebParamRef> parameters = ref.parameters;
+        if (parameters == null || parameters.isEmpty ()) {
+            return new ArgumentBinder[0];
+        }
+        Class<?>[] types = ref.method.getParameterTypes ();
+        // 多个参数都来自请求体时，共享同一棵解析树
+        int count = 0;
+        for (WebParamRef wp : parameters) {
+            if (wp != null && !wp.internal && wp.location == ParameterLocation.Body) {
+                count ++;
+            }
+        }
+        ArgumentBinder[] binders = new ArgumentBinder[parameters.size ()];
+        for (int i = 0; i < binders.length; i ++) {
+            binders[i] = compile (parameters.get (i), types[i], count > 1);
+        }
+        return binders;
+    }
+
+    /**
+     * 字符串形式的参数值的来源
+     */
+    @FunctionalInterface
+    private interface Source {
+        String get (HttpServletRequest request, Map<String, String> parsedArgs) throws IOException;
+    }
+
+    /**
+     * 字符串到参数类型的转换
+     */
+    @FunctionalInterface
+    private interface Converter {
+        Object convert (String expression);
+    }
+
+    private static ArgumentBinder compile (WebParamRef wp, Class<?> type, boolean shared) {
+        if (wp == null || wp.internal) {
+            return internal (type);
+        }
+
+        if (wp.type != null) {
+            String name = wp.name;
+            switch (wp.type) {
+                case request_attribute:
+                    return (request, response, args, body) -> required (request.getAttribute (name), wp, "request");
+                case session_attribute:
+                    return (request, response, args, body) -> required (request.getSession ().getAttribute (name), wp, "session");
+                case context_attribute:
+                    return (request, response, args, body) -> required (request.getServletContext ().getAttribute (name), wp, "session");
+            }
+        }
+
+        Converter converter = converter (wp, type);
+        if (wp.location == ParameterLocation.Body) {
+            return body (wp, type, converter, shared);
+        }
+        Source source = source (wp);
+        return (request, response, args, body) -> converter.convert (source.get (request, args));
+    }
+
+    /**
+     * 请求体参数。json 请求体按参数类型直接从输入流解析，或从共享的解析树转换，
+     * 需要文本的参数（字符串、数值等）取请求体的原始文本；其他请求体按表单参数处理
+     */
+    private static ArgumentBinder body (WebParamRef wp, Class<?> type, Converter converter, boolean shared) {
+        String name = wp.name;
+        TypeAdapter<?> adapter = null;
+        if ((wp.type == null || wp.type == ParameterType.raw) && scalar (type) == null) {
+            adapter = GsonHelper.getGson ().getAdapter (type);
+        }
+        TypeAdapter<?> json = adapter;
+        return (request, response, args, body) -> {
+            String contentType = request.getContentType ();
+            if (contentType != null && contentType.contains ("json")) {
+                if (json == null) {
+                    return converter.convert (body.text ());
+                }
+                return shared ? json.fromJsonTree (body.tree ()) : body.read (json);
+            }
+            return converter.convert (request.getParameter (name));
+        };
+    }
+
+    private static ArgumentBinder internal (Class<?> type) {
+        if (type == ServletContext.class) {
+            return (request, response, args, body) -> request.getServletContext ();
+        } else if (type == HttpServletRequest.class) {
+            return (request, response, args, body) -> request;
+        } else if (type == HttpServletResponse.class) {
+            return (request, response, args, body) -> response;
+        } else if (type == HttpSession.class) {
+            return (request, response, args, body) -> request.getSession ();
+        } else {
+            return (request, response, args, body) -> {
+                throw new IllegalArgumentException ("unsupported internal type: " + type);
+            };
+        }
+    }
+
+    private static Object required (Object o, WebParamRef wp, String scope) {
+        if (o == null && !wp.nullable) {
+            throw new RuntimeException ("parameter [" + scope + "." + wp.name + "] needs value, but meet null!");
+        }
+        return o;
+    }
+
+    private static Source source (WebParamRef wp) {
+        String name = wp.name;
+        String defaultValue = isNotEmpty (wp.defaultValue) ? wp.defaultValue : null;
+        switch (wp.location) {
+            case QueryString:
+                if (defaultValue == null) {
+                    return (request, args) -> request.getParameter (name);
+                }
+                return (request, args) -> {
+                    String temp = request.getParameter (name);
+                    return StringUtil.isEmpty (temp) ? defaultValue : temp;
+                };
+            case Path:
+                return (request, args) -> args.get (name);
+            case Header:
+                if (defaultValue == null) {
+                    return (request, args) -> request.getHeader (name);
+                }
+                return (request, args) -> {
+                    String temp = request.getHeader (name);
+                    return StringUtil.isEmpty (temp) ? defaultValue : temp;
+                };
+            case Internal:
+            case ContextAttribute:
+            case RequestAttribute:
+            case SessionAttribute:
+                return (request, args) -> "0";
+            case Cookie:
+                return (request, args) -> cookie (request, name);
+            default:
+                ParameterLocation location = wp.location;
+                return (request, args) -> {
+                    throw new IllegalArgumentException ("unknown location: " + location);
+                };
+        }
+    }
+
+    private static Converter converter (WebParamRef wp, Class<?> type) {
+        if (wp.type == null) {
+            // 视为 raw
+            return converter (type);
+        }
+        switch (wp.type) {
+            case string:
+                return expression -> expression;
+            case integer:
+                return Integer::parseInt;
+            case long_integer:
+                return Long::parseLong;
+            case bool:
+                return Boolean::parseBoolean;
+            case datetime:
+                return ArgumentBinders::toDate;
+            case raw:
+            default:
+                return converter (type);
+        }
+    }
+
+    /**
+     * 按参数类型选择转换器。基本类型总是转换，对应的包装类型在值为空时返回 {@code null}
+     */
+    private static Converter converter (Class<?> type) {
+        Converter converter = scalar (type);
+        if (converter != null) {
+            return converter;
+        }
+
+        Gson g = GsonHelper.getGson ();
+        TypeAdapter<?> adapter = g.getAdapter (type);
+        return nullable (expression -> fromJson (adapter, expression));
+    }
+
+    /**
+     * 不需要 gson 的类型的转换器
+     * @return 转换器，其他类型返回 {@code null}
+     */
+    private static Converter scalar (Class<?> type) {
+        if (type == int.class) return Integer::parseInt;
+        if (type == Integer.class) return nullable (Integer::parseInt);
+        if (type == byte.class) return Byte::parseByte;
+        if (type == Byte.class) return nullable (Byte::parseByte);
+        if (type == char.class) return ArgumentBinders::toChar;
+        if (type == Character.class) return nullable (ArgumentBinders::toChar);
+        if (type == short.class) return Short::parseShort;
+        if (type == Short.class) return nullable (Short::parseShort);
+        if (type == long.class) return Long::parseLong;
+        if (type == Long.class) return nullable (Long::parseLong);
+        if (type == boolean.class) return Boolean::parseBoolean;
+        if (type == Boolean.class) return nullable (Boolean::parseBoolean);
+        if (type == float.class) return Float::parseFloat;
+        if (type == Float.class) return nullable (Float::parseFloat);
+        if (type == double.class) return Double::parseDouble;
+        if (type == Double.class) return nullable (Double::parseDouble);
+        if (type.isAssignableFrom (String.class)) return expression -> expression;
+        if (type == BigDecimal.class) return nullable (BigDecimal::new);
+        if (type == BigInteger.class) return nullable (BigInteger::new);
+        if (type == Date.class) return nullable (ArgumentBinders::toDate);
+        if (type == java.sql.Date.class) return nullable (e -> new java.sql.Date (toDate (e).getTime ()));
+        if (type == java.sql.Timestamp.class) return nullable (e -> new java.sql.Timestamp (toDate (e).getTime ()));
+        return null;
+    }
+
+    private static Converter nullable (Converter converter) {
+        return expression -> StringUtil.isEmpty (expression) ? null : converter.convert (expression);
+    }
+
+    /** 和 {@link Gson#fromJson(String, Class)} 的行为一致，只是跳过了每次的 adapter 查找 */
+    private static Object fromJson (TypeAdapter<?> adapter, String expression) {
+        JsonReader reader = new JsonReader (new StringReader (expression));
+        reader.setLenient (true);
+        try {
+            Object value;
+            try {
+                reader.peek ();
+            } catch (EOFException ex) {
+                return null;
+            }
+            value = adapter.read (reader);
+            if (reader.peek () != JsonToken.END_DOCUMENT) {
+                throw new JsonIOException ("JSON document was not fully consumed.");
+            }
+            return value;
+        } catch (IllegalStateException | IOException ex) {
+            throw new JsonSyntaxException (ex);
+        }
+    }
+
+    private static Object toChar (String expression) {
+        return expression.isEmpty () ? '\u0000' : expression.charAt (0);
+    }
+
+    /**
+     * 依次按 {@code yyyy-MM-dd HH:mm:ss} 和 {@code yyyy-MM-dd} 解析日期，
+     * 和原来的 {@code SimpleDateFormat} 一样宽松：允许一位数的月、日、时、分、秒，超出范围的值顺延，
+     * 忽略末尾多余的内容
+     */
+    private static Date toDate (String expression) {
+        ZoneId zone = ZoneId.systemDefault ();
+        try {
+            TemporalAccessor t = DATETIME.parse (expression, new ParsePosition (0));
+            return Date.from (LocalDateTime.from (t).atZone (zone).toInstant ());
+        } catch (DateTimeException ex) {
+            try {
+                TemporalAccessor t = DATE.parse (expression, new ParsePosition (0));
+                return Date.from (LocalDate.from (t).atStartOfDay (zone).toInstant ());
+            } catch (DateTimeException e) {
+                throw new RuntimeException (e);
+            }
+        }
+    }
+
+    private static String cookie (HttpServletRequest request, String name) {
+        Cookie[] cookies = request.getCookies ();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (name.equals (cookie.getName ())) {
+                    return cookie.getValue ();
+                }
+            }
+        }
+        return "";
+    }
+
+    private static boolean isNotEmpty (String value) {
+        return !StringUtil.isEmpty (value) && !"$$EMPTY$$".equals (value);
+    }
+}
@@ -0,0 +1,97 @@
+package org.dreamwork.integration.internal.embedded.httpd.support;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * TinyLFU 使用的访问频率估算，4 位计数器的 Count-Min Sketch.
+ *
+ * <p>每个 long 存放 16 个计数器，每个键在 4 行中各对应一个计数器，估算值取其中的最小值。
+ * 累计增加的次数达到采样数时，所有计数器减半，使估算值反映最近的访问频率</p>
+ * <p>计数器通过 CAS 更新，不需要加锁</p>
+ *
+ * @since 1.1.0
+ */
+final class FrequencySketch {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final AtomicLongArray table;
+    private final int mask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger ();
+
+    /**
+     * @param maxEntries 缓存的最大条目数
+     */
+    FrequencySketch (int maxEntries) {
+        int length = Integer.highestOneBit (Math.max (16, maxEntries) - 1) << 1;
+        table      = new AtomicLongArray (length);
+        mask       = length - 1;
+        sampleSize = 10 * length;
+    }
+
+    /**
+     * 估算访问频率
+     * @param hash 键的哈希值
+     * @return 0 到 15 之间的估算值
+     */
+    int frequency (int hash) {
+        int min = 15;
+        for (int i = 0; i < SEEDS.length; i ++) {
+            long h = spread (hash, i);
+            int offset = (int) (h & 15) << 2;
+            int count  = (int) ((table.get (index (h)) >>> offset) & 15);
+            min = Math.min (min, count);
+        }
+        return min;
+    }
+
+    /**
+     * 记录一次访问
+     * @param hash 键的哈希值
+     */
+    void increment (int hash) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i ++) {
+            long h = spread (hash, i);
+            int index  = index (h);
+            int offset = (int) (h & 15) << 2;
+            for (;;) {
+                long value = table.get (index);
+                if (((value >>> offset) & 15) == 15) {
+                    break;
+                }
+                if (table.compareAndSet (index, value, value + (1L << offset))) {
+                    added = true;
+                    break;
+                }
+            }
+        }
+        // 只有恰好到达采样数的线程执行衰减
+        if (added && additions.incrementAndGet () == sampleSize) {
+            reset ();
+        }
+    }
+
+    private void reset () {
+        for (int i = 0, n = table.length (); i < n; i ++) {
+            long value;
+            do {
+                value = table.get (i);
+            } while (!table.compareAndSet (i, value, (value >>> 1) & RESET_MASK));
+        }
+        additions.set (0);
+    }
+
+    private int index (long h) {
+        return (int) (h >>> 32) & mask;
+    }
+
+    private static long spread (int hash, int i) {
+        long h = (hash ^ SEEDS[i]) * 0x9e3779b97f4a7c15L;
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,129 @@
+package org.dreamwork.integration.internal.embedded.httpd.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数-线性分桶的延迟直方图，和 HdrHistogram 的分桶方式相同.
+ *
+ * <p>每个 2 的幂区间再线性地分成 {@link #SUB_BUCKETS} 个桶，相对误差不超过 1/{@link #SUB_BUCKETS}。
+ * 记录的单位是纳秒，超过 2<sup>{@value #MAX_EXPONENT}</sup> 纳秒（约 68 秒）的值记在最后一个桶中</p>
+ * <p>计数分散在若干条带上，按线程选择条带，记录时只有一次无锁的原子加法，避免多个线程争用同一个缓存行</p>
+ *
+ * @since 1.1.0
+ */
+final class LatencyHistogram {
+    private static final int SUB_BITS     = 4;
+    private static final int SUB_BUCKETS  = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 36;
+    private static final long MAX_VALUE   = (1L << MAX_EXPONENT) - 1;
+    private static final int BUCKETS      = (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private static final int STRIPES;
+    static {
+        int n = Math.min (8, Runtime.getRuntime ().availableProcessors ());
+        STRIPES = Integer.highestOneBit (Math.max (1, n));
+    }
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES];
+    private final LongAdder sum = new LongAdder ();
+    private final AtomicLong max = new AtomicLong ();
+
+    LatencyHistogram () {
+        for (int i = 0; i < STRIPES; i ++) {
+            stripes[i] = new AtomicLongArray (BUCKETS);
+        }
+    }
+
+    /**
+     * 记录一个值
+     * @param nanos 耗时，单位纳秒
+     */
+    void record (long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int stripe = (int) Thread.currentThread ().getId () & (STRIPES - 1);
+        stripes[stripe].incrementAndGet (index (nanos));
+        sum.add (nanos);
+        long current = max.get ();
+        while (nanos > current && !max.compareAndSet (current, nanos)) {
+            current = max.get ();
+        }
+    }
+
+    /**
+     * 合并各条带的计数，取一份快照
+     * @return 快照
+     */
+    Snapshot snapshot () {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i ++) {
+                long n = stripe.get (i);
+                counts[i] += n;
+                total += n;
+            }
+        }
+        return new Snapshot (counts, total, sum.sum (), max.get ());
+    }
+
+    static int index (long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        if (value > MAX_VALUE) {
+            return BUCKETS - 1;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros (value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /** 桶中最大的值 */
+    static long upperBound (int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BITS) - 1;
+        long lower = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    static final class Snapshot {
+        private final long[] counts;
+        final long count, sum, max;
+
+        private Snapshot (long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count  = count;
+            this.sum    = sum;
+            this.max    = max;
+        }
+
+        /**
+         * 分位数
+         * @param quantile 0 到 1 之间的分位
+         * @return 分位值所在桶的上界，单位纳秒，不超过记录到的最大值
+         */
+        long percentile (double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max (1, (long) Math.ceil (quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i ++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min (upperBound (i), max);
+                }
+            }
+            return max;
+        }
+
+        long mean () {
+            return count == 0 ? 0 : sum / count;
+        }
+    }
+}
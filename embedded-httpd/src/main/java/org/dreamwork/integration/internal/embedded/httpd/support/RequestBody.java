@@ -0,0 +1,194 @@
+package org.dreamwork.integration.internal.embedded.httpd.support;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 一次请求的 json 请求体.
+ *
+ * <p>请求体只能读取一次，这个类负责在同一次请求的多个 {@code Body} 参数之间共享读取结果：</p>
+ * <ul>
+ * <li>只有一个参数需要时，{@link #read(TypeAdapter)} 直接从请求的输入流解析，不产生中间的字符串</li>
+ * <li>多个参数需要时，先读取原始文本，{@link #tree()} 从文本解析一次并缓存解析树，
+ * {@link #text()} 总是返回原始的请求体，与参数的顺序无关</li>
+ * <li>需要原始文本的参数通过 {@link #text()} 获取</li>
+ * </ul>
+ * <p>读取时按字节计数，超过上限立即抛出 {@link PayloadTooLargeException}</p>
+ *
+ * @since 1.1.0
+ */
+public final class RequestBody {
+    private final HttpServletRequest request;
+    /** 请求体的最大字节数，不大于 0 时不限制 */
+    private final long limit;
+
+    private boolean consumed;
+    private String text;
+    private JsonElement tree;
+
+    public RequestBody (HttpServletRequest request, long limit) {
+        this.request = request;
+        this.limit   = limit;
+    }
+
+    /**
+     * 以原始文本的形式获取请求体
+     * @return 请求体文本
+     * @throws IOException 读取失败，或请求体超过上限
+     */
+    public String text () throws IOException {
+        if (text == null) {
+            if (consumed) {
+                text = "";
+            } else {
+                StringWriter out = new StringWriter ();
+                try (Reader in = open ()) {
+                    char[] buff = new char[4096];
+                    for (int length; (length = in.read (buff)) != -1; ) {
+                        out.write (buff, 0, length);
+                    }
+                }
+                text = out.toString ();
+            }
+        }
+        return text;
+    }
+
+    /**
+     * 获取请求体的解析树，同一次请求中只解析一次
+     * @return 解析树，请求体为空时返回 {@link JsonNull#INSTANCE}
+     * @throws IOException 读取失败，或请求体超过上限
+     */
+    public JsonElement tree () throws IOException {
+        if (tree == null) {
+            try {
+                // 保留原始文本，其他参数通过 text() 取到的仍是原始的请求体
+                String s = text ();
+                tree = s.trim ().isEmpty () ? JsonNull.INSTANCE : JsonParser.parseString (s);
+            } catch (JsonParseException ex) {
+                throw unwrap (ex);
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * 将请求体转换为指定类型。若请求体还没有被读取过，直接从输入流解析
+     * @param adapter 类型适配器
+     * @param <T>     类型
+     * @return 转换后的值，请求体为空时返回 {@code null}
+     * @throws IOException 读取失败，或请求体超过上限
+     */
+    public <T> T read (TypeAdapter<T> adapter) throws IOException {
+        if (tree != null || text != null || consumed) {
+            return adapter.fromJsonTree (tree ());
+        }
+        try (Reader in = open ()) {
+            JsonReader reader = new JsonReader (in);
+            reader.setLenient (true);
+            if (reader.peek () == JsonToken.END_DOCUMENT) {
+                return null;
+            }
+            T value = adapter.read (reader);
+            if (reader.peek () != JsonToken.END_DOCUMENT) {
+                throw new JsonIOException ("JSON document was not fully consumed.");
+            }
+            return value;
+        } catch (EOFException ex) {
+            return null;
+        } catch (PayloadTooLargeException ex) {
+            throw ex;
+        } catch (JsonParseException ex) {
+            throw unwrap (ex);
+        } catch (IllegalStateException | IOException ex) {
+            throw new JsonSyntaxException (ex);
+        }
+    }
+
+    private Reader open () throws IOException {
+        if (limit > 0 && request.getContentLengthLong () > limit) {
+            throw new PayloadTooLargeException (limit);
+        }
+        consumed = true;
+        String encoding = request.getCharacterEncoding ();
+        Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName (encoding);
+        InputStream in = request.getInputStream ();
+        if (limit > 0) {
+            in = new LimitedInputStream (in, limit);
+        }
+        return new BufferedReader (new InputStreamReader (in, charset));
+    }
+
+    /** gson 会把读取时的异常包装起来，这里还原出超限异常 */
+    private static RuntimeException unwrap (JsonParseException ex) throws PayloadTooLargeException {
+        for (Throwable t = ex.getCause (); t != null; t = t.getCause ()) {
+            if (t instanceof PayloadTooLargeException) {
+                throw (PayloadTooLargeException) t;
+            }
+        }
+        return ex;
+    }
+
+    /**
+     * 请求体超过上限
+     */
+    public static final class PayloadTooLargeException extends IOException {
+        public PayloadTooLargeException (long limit) {
+            super ("request body exceeds " + limit + " bytes");
+        }
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream (InputStream in, long limit) {
+            super (in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read () throws IOException {
+            int b = super.read ();
+            if (b != -1) {
+                check (1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read (byte[] b, int off, int len) throws IOException {
+            int n = super.read (b, off, len);
+            if (n > 0) {
+                check (n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip (long n) throws IOException {
+            long skipped = super.skip (n);
+            check (skipped);
+            return skipped;
+        }
+
+        private void check (long n) throws PayloadTooLargeException {
+            count += n;
+            if (count > limit) {
+                throw new PayloadTooLargeException (limit);
+            }
+        }
+    }
+}
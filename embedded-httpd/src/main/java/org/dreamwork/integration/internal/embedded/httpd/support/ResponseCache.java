@@ -0,0 +1,342 @@
+package org.dreamwork.integration.internal.embedded.httpd.support;
+
+import org.dreamwork.integration.httpd.annotation.ACacheable;
+import org.dreamwork.integration.httpd.support.ParameterLocation;
+import org.dreamwork.integration.httpd.support.ParameterType;
+import org.dreamwork.util.StringUtil;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * 一个 restful api 的响应缓存，缓存已经序列化好的响应内容.
+ *
+ * <p>淘汰策略参照 W-TinyLFU：</p>
+ * <ul>
+ * <li>新条目先进入约占容量 1% 的窗口区，按先进先出离开窗口</li>
+ * <li>离开窗口的条目在主区已满时，和主区按 CLOCK 选出的淘汰者比较 {@link FrequencySketch 访问频率}，
+ * 频率更高的一方留在主区。这样偶尔访问一次的键不会挤掉经常访问的键</li>
+ * <li>过期的条目在读取或淘汰时移除</li>
+ * </ul>
+ * <p>读取只访问 {@link ConcurrentHashMap} 和无锁的计数器，写入和淘汰在锁内完成。
+ * 被移除的条目只做标记，在离开队列时跳过，必要时压缩队列</p>
+ *
+ * @since 1.1.0
+ */
+public final class ResponseCache {
+    /** 默认参与缓存键的参数位置，即来自请求本身的参数 */
+    private static final Set<ParameterLocation> KEY_LOCATIONS = EnumSet.of (
+            ParameterLocation.Auto, ParameterLocation.Path, ParameterLocation.QueryString,
+            ParameterLocation.Form, ParameterLocation.Header, ParameterLocation.Cookie
+    );
+
+    /** 缓存名称 */
+    public final String name;
+
+    private final long ttl;
+    private final int windowMax, mainMax;
+    /** 组成缓存键的参数下标 */
+    private final int[] keys;
+
+    private final Map<String, Entry> data = new ConcurrentHashMap<> ();
+    private final FrequencySketch sketch;
+    private final ArrayDeque<Entry> window = new ArrayDeque<> ();
+    private final ArrayDeque<Entry> main = new ArrayDeque<> ();
+    /** 两个队列中有效条目的数量 */
+    private int windowSize, mainSize;
+
+    public ResponseCache (WebMethodRef ref, ACacheable cacheable) {
+        name = StringUtil.isEmpty (cacheable.value ()) ? ref.pattern : cacheable.value ().trim ();
+        ttl  = TimeUnit.MILLISECONDS.toNanos (Math.max (1, cacheable.ttl ()));
+
+        int max   = Math.max (1, cacheable.maxEntries ());
+        windowMax = Math.max (1, max / 100);
+        mainMax   = Math.max (1, max - windowMax);
+        sketch    = new FrequencySketch (max);
+        keys      = resolve (ref, cacheable.keys ());
+    }
+
+    /**
+     * 从处理方法的参数生成缓存键
+     * @param args 绑定好的参数，可能为 null
+     * @return 缓存键
+     */
+    public String key (Object[] args) {
+        if (keys.length == 0) {
+            return "";
+        }
+        Object[] values = new Object[keys.length];
+        for (int i = 0; i < keys.length; i ++) {
+            values[i] = args[keys[i]];
+        }
+        return join (values);
+    }
+
+    /**
+     * 查找缓存
+     * @param key 缓存键
+     * @return 未过期的条目，没有时返回 null
+     */
+    public Entry get (String key) {
+        sketch.increment (key.hashCode ());
+        Entry entry = data.get (key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime () - entry.expires >= 0) {
+            remove (entry);
+            return null;
+        }
+        entry.accessed = true;
+        return entry;
+    }
+
+    /**
+     * 缓存一个响应
+     * @param key         缓存键
+     * @param body        响应内容
+     * @param contentType 响应的 content type
+     * @return 新的条目
+     */
+    public Entry put (String key, byte[] body, String contentType) {
+        Entry entry = new Entry (key, body, contentType, System.nanoTime () + ttl);
+        synchronized (this) {
+            Entry old = data.put (key, entry);
+            if (old != null) {
+                discard (old);
+            }
+            window.addLast (entry);
+            windowSize ++;
+            while (windowSize > windowMax) {
+                admit (poll (window));
+                windowSize --;
+            }
+            compact ();
+        }
+        return entry;
+    }
+
+    /**
+     * 使缓存失效
+     * @param values 组成缓存键的参数值，为空时清空所有条目
+     */
+    public void invalidate (Object... values) {
+        if (values == null || values.length == 0) {
+            synchronized (this) {
+                for (Entry entry : data.values ()) {
+                    entry.removed = true;
+                }
+                data.clear ();
+                window.clear ();
+                main.clear ();
+                windowSize = mainSize = 0;
+            }
+        } else {
+            Entry entry = data.get (join (values));
+            if (entry != null) {
+                remove (entry);
+            }
+        }
+    }
+
+    /** 离开窗口的条目进入主区，主区已满时和淘汰者比较访问频率 */
+    private void admit (Entry candidate) {
+        if (mainSize < mainMax) {
+            candidate.main = true;
+            main.addLast (candidate);
+            mainSize ++;
+            return;
+        }
+        Entry victim = victim ();
+        if (sketch.frequency (candidate.key.hashCode ()) > sketch.frequency (victim.key.hashCode ())) {
+            evict (victim);
+            candidate.main = true;
+            main.addLast (candidate);
+        } else {
+            main.addFirst (victim);
+            evict (candidate);
+        }
+    }
+
+    /** 按 CLOCK 从主区取出淘汰者：过期的或最近没有被访问过的条目 */
+    private Entry victim () {
+        long now = System.nanoTime ();
+        for (int i = 0, n = main.size () << 1; ; i ++) {
+            Entry entry = poll (main);
+            if (i >= n || !entry.accessed || now - entry.expires >= 0) {
+                return entry;
+            }
+            entry.accessed = false;
+            main.addLast (entry);
+        }
+    }
+
+    /** 取出队首的有效条目，跳过已经移除的 */
+    private static Entry poll (ArrayDeque<Entry> queue) {
+        Entry entry;
+        do {
+            entry = queue.pollFirst ();
+        } while (entry.removed);
+        return entry;
+    }
+
+    private void evict (Entry entry) {
+        entry.removed = true;
+        data.remove (entry.key, entry);
+    }
+
+    private synchronized void remove (Entry entry) {
+        if (data.remove (entry.key, entry)) {
+            discard (entry);
+            compact ();
+        }
+    }
+
+    /** 标记为已移除，条目留在队列中，出队时跳过 */
+    private void discard (Entry entry) {
+        entry.removed = true;
+        if (entry.main) {
+            mainSize --;
+        } else {
+            windowSize --;
+        }
+    }
+
+    /** 已移除的条目过多时压缩队列 */
+    private void compact () {
+        if (window.size () > (windowSize << 1) + 16) {
+            window.removeIf (e -> e.removed);
+        }
+        if (main.size () > (mainSize << 1) + 16) {
+            main.removeIf (e -> e.removed);
+        }
+    }
+
+    private static int[] resolve (WebMethodRef ref, String[] names) {
+        if (ref.parameters == null) {
+            if (names.length > 0) {
+                throw new IllegalArgumentException ("method " + ref.method + " has no parameter for cache keys");
+            }
+            return new int[0];
+        }
+        List<WebParamRef> parameters = ref.parameters;
+        if (names.length == 0) {
+            // 依赖于会话、属性或 servlet 对象的处理方法，其结果无法只由请求参数决定，必须明确指定缓存键
+            Class<?>[] types = ref.method.getParameterTypes ();
+            for (int i = 0; i < parameters.size (); i ++) {
+                WebParamRef p = parameters.get (i);
+                if (p.internal ? types[i] != HttpServletResponse.class : !KEY_LOCATIONS.contains (p.location) || isAttribute (p.type)) {
+                    throw new IllegalArgumentException (
+                            "parameter #" + i + " of method " + ref.method + " is not part of the default cache key, specify ACacheable.keys explicitly"
+                    );
+                }
+            }
+            return IntStream.range (0, parameters.size ())
+                    .filter (i -> {
+                        WebParamRef p = parameters.get (i);
+                        return !p.internal && p.name != null && KEY_LOCATIONS.contains (p.location);
+                    })
+                    .toArray ();
+        }
+        int[] indexes = new int[names.length];
+        for (int i = 0; i < names.length; i ++) {
+            indexes[i] = -1;
+            for (int j = 0; j < parameters.size (); j ++) {
+                if (names[i].equals (parameters.get (j).name)) {
+                    indexes[i] = j;
+                    break;
+                }
+            }
+            if (indexes[i] < 0) {
+                throw new IllegalArgumentException ("cache key " + names[i] + " is not a parameter of method " + ref.method);
+            }
+        }
+        return indexes;
+    }
+
+    private static boolean isAttribute (ParameterType type) {
+        return type == ParameterType.request_attribute ||
+                type == ParameterType.session_attribute ||
+                type == ParameterType.context_attribute;
+    }
+
+    private static String join (Object[] values) {
+        StringBuilder builder = new StringBuilder ();
+        for (int i = 0; i < values.length; i ++) {
+            if (i > 0) {
+                builder.append ('\u001f');
+            }
+            Object value = values[i];
+            if (value instanceof Object[]) {
+                builder.append (Arrays.deepToString ((Object[]) value));
+            } else {
+                builder.append (value);
+            }
+        }
+        return builder.toString ();
+    }
+
+    /**
+     * 一个缓存的响应
+     */
+    public static final class Entry {
+        public final byte[] body;
+        public final String contentType;
+        /** 强 ETag，由内容计算 */
+        public final String etag;
+
+        private final String key;
+        private final long expires;
+        private volatile boolean accessed;
+        private volatile boolean removed;
+        /** 是否在主区，只在锁内访问 */
+        private boolean main;
+
+        private Entry (String key, byte[] body, String contentType, long expires) {
+            this.key         = key;
+            this.body        = body;
+            this.contentType = contentType;
+            this.expires     = expires;
+            this.etag        = '"' + Long.toHexString (hash (body)) + '"';
+        }
+
+        /**
+         * 判断请求的 {@code If-None-Match} 是否和这个条目匹配
+         * @param header {@code If-None-Match} 头
+         * @return 匹配时返回 true
+         */
+        public boolean matches (String header) {
+            if (StringUtil.isEmpty (header)) {
+                return false;
+            }
+            for (String tag : header.split (",")) {
+                tag = tag.trim ();
+                if (tag.startsWith ("W/")) {
+                    tag = tag.substring (2);
+                }
+                if ("*".equals (tag) || etag.equals (tag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** 64 位 FNV-1a */
+        private static long hash (byte[] data) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : data) {
+                h ^= b & 0xff;
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.dreamwork.integration.internal.embedded.httpd.support;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个路由（http 方法 + 路由模式，而不是实际的请求路径）的运行指标.
+ *
+ * <p>包括延迟直方图、正在处理的请求数、按 {@code RestfulException} 的 code 统计的错误数和输出的字节数。
+ * 所有计数都是无锁的条带计数器，一次请求的记录开销是两次 {@link System#nanoTime()} 加上几次原子加法</p>
+ *
+ * @since 1.1.0
+ */
+public final class RouteMetrics {
+    /** 不是 {@code RestfulException} 的异常记在这个 code 下 */
+    public static final int UNKNOWN_ERROR = 500;
+
+    public final String route;
+
+    private final LatencyHistogram latency = new LatencyHistogram ();
+    private final LongAdder inflight = new LongAdder ();
+    private final LongAdder bytes = new LongAdder ();
+    private final Map<Integer, LongAdder> errors = new ConcurrentHashMap<> ();
+
+    public RouteMetrics (String route) {
+        this.route = route;
+    }
+
+    /**
+     * 开始处理一个请求
+     * @return 开始时间，传给 {@link #leave(long, long)}
+     */
+    public long enter () {
+        inflight.increment ();
+        return System.nanoTime ();
+    }
+
+    /**
+     * 请求处理完成
+     * @param start   {@link #enter()} 返回的开始时间
+     * @param written 输出的字节数
+     */
+    public void leave (long start, long written) {
+        latency.record (System.nanoTime () - start);
+        if (written > 0) {
+            bytes.add (written);
+        }
+        inflight.decrement ();
+    }
+
+    /**
+     * 记录一个错误
+     * @param code {@code RestfulException} 的 code，其他异常为 {@link #UNKNOWN_ERROR}
+     */
+    public void error (int code) {
+        LongAdder counter = errors.get (code);
+        if (counter == null) {
+            counter = errors.computeIfAbsent (code, key -> new LongAdder ());
+        }
+        counter.increment ();
+    }
+
+    /**
+     * 取一份快照，时间单位为微秒
+     * @return 可以直接序列化为 json 的快照
+     */
+    public Map<String, Object> snapshot () {
+        LatencyHistogram.Snapshot s = latency.snapshot ();
+        Map<String, Object> map = new LinkedHashMap<> ();
+        map.put ("route", route);
+        map.put ("requests", s.count);
+        map.put ("inflight", inflight.sum ());
+        map.put ("bytes", bytes.sum ());
+        Map<Integer, Long> errors = new TreeMap<> ();
+        for (Map.Entry<Integer, LongAdder> e : this.errors.entrySet ()) {
+            errors.put (e.getKey (), e.getValue ().sum ());
+        }
+        map.put ("errors", errors);
+        Map<String, Long> latency = new LinkedHashMap<> ();
+        latency.put ("mean", micros (s.mean ()));
+        latency.put ("p50",  micros (s.percentile (.5)));
+        latency.put ("p90",  micros (s.percentile (.9)));
+        latency.put ("p99",  micros (s.percentile (.99)));
+        latency.put ("p999", micros (s.percentile (.999)));
+        latency.put ("max",  micros (s.max));
+        map.put ("latency", latency);
+        return map;
+    }
+
+    private static long micros (long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros (nanos);
+    }
+}
@@ -6,8 +6,12 @@ import org.dreamwork.integration.httpd.support.ParameterType;
 import org.dreamwork.util.StringUtil;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -21,6 +25,9 @@ import static org.dreamwork.integration.httpd.support.ParameterType.*;
 public class WebMethodRef {
     public static final Pattern PARSER = Pattern.compile ("^(.*?)?\\$\\{(.*?)}(.*?)?$");
 
+    /** (Object bean, Object[] args)Object @since 1.1.0 */
+    private static final MethodType INVOKER = MethodType.methodType (Object.class, Object.class, Object[].class);
+
     public Object bean;
 
     public final Method method;
@@ -32,6 +39,16 @@ public class WebMethodRef {
     public List<WebParamRef> parameters;
     /** @since 1.1.0 */
     public boolean wrapped;
+    /** 是否交给异步执行器运行 @since 1.1.0 */
+    public boolean blocking;
+    /** 运行指标，挂载到 httpd 时设置 @since 1.1.0 */
+    public RouteMetrics metrics;
+    /** 响应缓存，处理方法声明了 {@link ACacheable} 时由扫描器设置 @since 1.1.0 */
+    public ResponseCache cache;
+    /** 和方法参数一一对应的绑定器，在构造时生成 @since 1.1.0 */
+    public final ArgumentBinder[] binders;
+    /** 编译后的方法句柄，形如 {@link #INVOKER} @since 1.1.0 */
+    private final MethodHandle handle;
 
     public WebMethodRef (Method method, String pattern) {
         this.method  = method;
@@ -124,6 +141,8 @@ public class WebMethodRef {
                 }
             }
         }
+        binders = ArgumentBinders.compile (this);
+        handle  = compile (method);
     }
 
     public ParameterLocation translateLocation (AContextAttribute ca) {
@@ -201,10 +220,31 @@ public class WebMethodRef {
 
     public Object invoke (Object... args) throws InvocationTargetException {
         try {
-            return method.invoke (bean, args);
+            return (Object) handle.invokeExact (bean, args);
+        } catch (Throwable t) {
+            // 和 Method.invoke 一样包装方法抛出的异常，调用方据此处理 RestfulException
+            throw new InvocationTargetException (t);
+        }
+    }
+
+    /**
+     * 将方法编译成 {@code (Object bean, Object[] args)Object} 形式的方法句柄，
+     * 调用时不再经过反射的访问检查，也可以被 JIT 内联
+     */
+    private static MethodHandle compile (Method method) {
+        if (!method.isAccessible ()) {
+            method.setAccessible (true);
+        }
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.lookup ().unreflect (method);
         } catch (IllegalAccessException ex) {
             throw new RuntimeException (ex);
         }
+        if (Modifier.isStatic (method.getModifiers ())) {
+            handle = MethodHandles.dropArguments (handle, 0, Object.class);
+        }
+        return handle.asSpreader (Object[].class, method.getParameterCount ()).asType (INVOKER);
     }
 
     private List<String> split (String pattern) {
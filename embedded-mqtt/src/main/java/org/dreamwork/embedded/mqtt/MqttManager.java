@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -34,6 +35,8 @@ public class MqttManager implements MqttCallback {
     private String clientId;
     private MqttConnectOptions opts;
     private static final int QOS_LEVEL = 0;
+    /** 已收到但尚未处理完成的消息数量 */
+    private final AtomicInteger inflight = new AtomicInteger ();
 
     MqttManager (MqttConfig conf, TaskGroup<IncomingMessage> group) {
         this.conf  = conf;
@@ -174,7 +177,7 @@ public class MqttManager implements MqttCallback {
 //        boolean success = true;
         List<IMqttListener> cache = new ArrayList<> ();
         for (IMqttListener listener : listeners) {
-            MqttMessageListenerDelegate delegate = new MqttMessageListenerDelegate (group, listener);
+            MqttMessageListenerDelegate delegate = new MqttMessageListenerDelegate (group, listener, this);
             try {
                 client.subscribe (topic, delegate);
                 cache.add (listener);
@@ -284,6 +287,51 @@ public class MqttManager implements MqttCallback {
         }
     }
 
+    /**
+     * 取消所有订阅，并等待已收到的消息处理完成
+     * @param timeout 最长等待时间，单位毫秒
+     * @return 所有消息都已处理完成返回 {@code true}，超时返回 {@code false}
+     * @since 1.1.0
+     */
+    public boolean drain (long timeout) {
+        if (client != null && !subscribedTopics.isEmpty ()) {
+            try {
+                client.unsubscribe (subscribedTopics.keySet ().toArray (new String[0]));
+            } catch (MqttException ex) {
+                logger.warn (ex.getMessage (), ex);
+            }
+        }
+        long deadline = System.currentTimeMillis () + timeout;
+        synchronized (inflight) {
+            long remain;
+            while (inflight.get () > 0 && (remain = deadline - System.currentTimeMillis ()) > 0) {
+                try {
+                    inflight.wait (remain);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread ().interrupt ();
+                    break;
+                }
+            }
+        }
+        return inflight.get () == 0;
+    }
+
+    void enter () {
+        inflight.incrementAndGet ();
+    }
+
+    /**
+     * 一条收到的消息处理完成
+     * @since 1.1.0
+     */
+    public void leave () {
+        if (inflight.decrementAndGet () == 0) {
+            synchronized (inflight) {
+                inflight.notifyAll ();
+            }
+        }
+    }
+
     public boolean isConnected () {
         return client != null && client.isConnected ();
     }
@@ -14,16 +14,20 @@ class MqttMessageListenerDelegate implements IMqttMessageListener {
     private final Logger logger = LoggerFactory.getLogger (MqttMessageListenerDelegate.class);
     private final IMqttListener stub;
     private final TaskGroup<IncomingMessage> group;
+    private final MqttManager manager;
 
-    MqttMessageListenerDelegate (TaskGroup<IncomingMessage> group, IMqttListener stub) {
+    MqttMessageListenerDelegate (TaskGroup<IncomingMessage> group, IMqttListener stub, MqttManager manager) {
         Objects.requireNonNull (stub);
         this.stub = stub;
         this.group = group;
+        this.manager = manager;
     }
 
     @Override
     public void messageArrived (String topic, MqttMessage message) {
-        if (!group.offer (new IncomingMessage (topic, message, stub))) {
+        manager.enter ();
+        if (!group.offer (new IncomingMessage (topic, message, stub, manager))) {
+            manager.leave ();
             logger.warn ("cannot offer message of topic: {}", topic);
         }
     }
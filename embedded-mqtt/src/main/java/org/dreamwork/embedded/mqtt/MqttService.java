@@ -69,6 +69,9 @@ public class MqttService implements IMqttService, IDisposable {
                     logger.warn (ex.getMessage (), ex);
                 }
             }
+            if (im.manager != null) {
+                im.manager.leave ();
+            }
         });
         outgoingTasks.start (om -> {
             if (om.manager != null) {
@@ -195,6 +198,12 @@ public class MqttService implements IMqttService, IDisposable {
         }
     }
 
+    @Override
+    public boolean drain (String configName, long timeout) {
+        MqttManager manager = managers.get (configName);
+        return manager == null || manager.drain (timeout);
+    }
+
     @Override
     public String getServerUrl (String configName) {
         MqttConfig conf = configs.get (configName);
@@ -1,5 +1,6 @@
 package org.dreamwork.embedded.mqtt.data;
 
+import org.dreamwork.embedded.mqtt.MqttManager;
 import org.dreamwork.integration.api.services.IMqttListener;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 
@@ -10,10 +11,17 @@ public class IncomingMessage implements Serializable {
     public MqttMessage message;
 
     public IMqttListener listener;
+    /** @since 1.1.0 */
+    public transient MqttManager manager;
 
     public IncomingMessage (String topic, MqttMessage message, IMqttListener listener) {
         this.topic = topic;
         this.message = message;
         this.listener = listener;
     }
+
+    public IncomingMessage (String topic, MqttMessage message, IMqttListener listener, MqttManager manager) {
+        this (topic, message, listener);
+        this.manager = manager;
+    }
 }
\ No newline at end of file
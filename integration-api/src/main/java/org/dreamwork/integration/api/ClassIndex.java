@@ -0,0 +1,194 @@
+package org.dreamwork.integration.api;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 编译期生成的类索引.
+ *
+ * <p>由 {@code integration-indexer} 注解处理器在编译期写入 {@value #LOCATION}，
+ * 记录了被框架关心的注解所标注的类和成员。扫描器可以通过索引直接定位需要加载的类，
+ * 而不必加载包内所有的类来检查注解。</p>
+ * <p>索引只对它覆盖的包有效，对于不在索引中的包，扫描器应该回退到常规的扫描方式，参见 {@link #covers(String)}。
+ * 每个索引文件只对和它位于同一个 jar 或目录中的类负责，同一个包分布在多个 jar 或目录中时，
+ * 只有所有位置都有覆盖该包的索引，才认为该包被覆盖</p>
+ *
+ * @since 1.1.0
+ */
+public final class ClassIndex {
+    /** 索引文件在 classpath 中的位置 */
+    public static final String LOCATION       = "META-INF/integration-index";
+
+    /** 标注了 {@code @Resource} 的类或成员 */
+    public static final String RESOURCE       = "resource";
+    /** 标注了 {@code @ARestfulAPI} 的类或方法 */
+    public static final String RESTFUL        = "restful";
+    /** 标注了 {@code @AConfigured} 的类或成员 */
+    public static final String CONFIGURED     = "configured";
+    /** 标注了 {@code @PostConstruct} 的方法 */
+    public static final String POST_CONSTRUCT = "post-construct";
+
+    private static final String PACKAGE       = "package";
+
+    private final ClassLoader loader;
+    /** 包名 -> 声明覆盖该包的索引所在的位置 */
+    private final Map<String, Set<String>> packages = new HashMap<> ();
+    /** 包名 -> 是否被完整覆盖 */
+    private final Map<String, Boolean> covered = new HashMap<> ();
+    /** 种类 -> 类本身被标注的类名 */
+    private final Map<String, Set<String>> types = new HashMap<> ();
+    /** 种类 -> 类名 -> 被标注的成员名称 */
+    private final Map<String, Map<String, Set<String>>> members = new HashMap<> ();
+
+    private ClassIndex (ClassLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * 加载指定类加载器可见的所有索引
+     * @param loader 类加载器
+     * @return 合并后的索引，若不存在任何索引返回 {@code null}
+     * @throws IOException 读取索引时发生的异常
+     */
+    public static ClassIndex load (ClassLoader loader) throws IOException {
+        Enumeration<URL> e = loader.getResources (LOCATION);
+        if (!e.hasMoreElements ()) {
+            return null;
+        }
+
+        ClassIndex index = new ClassIndex (loader);
+        while (e.hasMoreElements ()) {
+            URL url = e.nextElement ();
+            String root = rootOf (url, LOCATION);
+            try (BufferedReader reader = new BufferedReader (new InputStreamReader (url.openStream (), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine ()) != null) {
+                    index.parse (root, line.trim ());
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 获取资源所在的 jar 或目录
+     * @param url  资源的 url
+     * @param path 资源的路径
+     * @return 去掉资源路径后的 url
+     */
+    private static String rootOf (URL url, String path) {
+        String s = url.toString ();
+        if (s.endsWith ("/")) {
+            s = s.substring (0, s.length () - 1);
+        }
+        return s.endsWith (path) ? s.substring (0, s.length () - path.length ()) : s;
+    }
+
+    private void parse (String root, String line) {
+        if (line.isEmpty () || line.charAt (0) == '#') {
+            return;
+        }
+        int pos = line.indexOf (' ');
+        if (pos <= 0) {
+            return;
+        }
+        String kind = line.substring (0, pos), ref = line.substring (pos + 1).trim ();
+        if (PACKAGE.equals (kind)) {
+            packages.computeIfAbsent (ref, k -> new HashSet<> ()).add (root);
+        } else {
+            int sharp = ref.indexOf ('#');
+            if (sharp < 0) {
+                types.computeIfAbsent (kind, k -> new HashSet<> ()).add (ref);
+            } else {
+                members.computeIfAbsent (kind, k -> new HashMap<> ())
+                       .computeIfAbsent (ref.substring (0, sharp), k -> new HashSet<> ())
+                       .add (ref.substring (sharp + 1));
+            }
+        }
+    }
+
+    /**
+     * 获取指定注解对应的索引种类
+     * @param annotation 注解的类名
+     * @return 索引种类，若该注解不被索引返回 {@code null}
+     */
+    public static String kindOf (String annotation) {
+        switch (annotation) {
+            case "javax.annotation.Resource":
+                return RESOURCE;
+            case "org.dreamwork.integration.httpd.annotation.ARestfulAPI":
+                return RESTFUL;
+            case "org.dreamwork.integration.api.annotation.AConfigured":
+                return CONFIGURED;
+            case "javax.annotation.PostConstruct":
+                return POST_CONSTRUCT;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 判断指定的包是否被索引覆盖，不包括子包.
+     * <p>类加载器中所有包含该包的 jar 或目录都必须带有覆盖该包的索引，否则返回 {@code false}</p>
+     * @param packageName 包名
+     * @return 若被覆盖返回 {@code true}
+     */
+    public synchronized boolean covers (String packageName) {
+        Set<String> roots = packages.get (packageName);
+        if (roots == null) {
+            return false;
+        }
+        return covered.computeIfAbsent (packageName, k -> {
+            String path = packageName.replace ('.', '/');
+            try {
+                Enumeration<URL> e = loader.getResources (path);
+                while (e.hasMoreElements ()) {
+                    if (!roots.contains (rootOf (e.nextElement (), path))) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch (IOException ex) {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * 获取指定包中（不包括子包），类本身标注了指定种类注解的所有类名
+     * @param kind        种类，如 {@link #RESOURCE}
+     * @param packageName 包名
+     * @return 按名称排序的类的二进制名称
+     */
+    public Set<String> getClassNames (String kind, String packageName) {
+        Set<String> set = types.get (kind);
+        if (set == null) {
+            return Collections.emptySet ();
+        }
+        Set<String> names = new TreeSet<> ();
+        int length = packageName.length ();
+        for (String name : set) {
+            if (name.length () > length && name.startsWith (packageName) && name.charAt (length) == '.'
+                    && name.indexOf ('.', length + 1) < 0) {
+                names.add (name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 获取指定类中标注了指定种类注解的成员名称
+     * @param kind      种类
+     * @param className 类的二进制名称
+     * @return 成员名称集合
+     */
+    public Set<String> getMembers (String kind, String className) {
+        Map<String, Set<String>> map = members.get (kind);
+        Set<String> set = map == null ? null : map.get (className);
+        return set == null ? Collections.<String>emptySet () : Collections.unmodifiableSet (set);
+    }
+}
@@ -39,6 +39,33 @@ public interface IModuleContext {
      */
     <T> T findService (Class<T> type);
 
+    /**
+     * 获取指定类型服务的预解析句柄.
+     * <p>和 {@link #findService(Class)} 不同，句柄只在服务注册表发生变化后才会重新查找服务，
+     * 适合在热点路径上长期持有</p>
+     * <p>默认实现每次访问都委托给 {@link #findService(Class)}，框架提供的实现会缓存解析结果</p>
+     * @param type 服务类型, 必须是一个接口类型
+     * @param <T> 服务实例的类型
+     * @return 服务句柄，永不为 <code>null</code>
+     * @see ServiceHandle
+     * @since 1.1.0
+     */
+    default <T> ServiceHandle<T> serviceHandle (Class<T> type) {
+        return () -> findService (type);
+    }
+
+    /**
+     * 获取指定名称服务的预解析句柄.
+     * @param name 服务名称
+     * @param <T> 服务实例的类型
+     * @return 服务句柄，永不为 <code>null</code>
+     * @see #serviceHandle(Class)
+     * @since 1.1.0
+     */
+    default <T> ServiceHandle<T> serviceHandle (String name) {
+        return () -> findService (name);
+    }
+
     /**
      * 注册一个特定<strong>接口</strong>类型的服务.
      * <p>通常，模块运行时上下文容器<code>IModuleContext</code>将<strong>委托</strong>实现框架进行服务注册和查询</p>
@@ -120,4 +147,14 @@ public interface IModuleContext {
     URL getResource (String name);
 
     ModuleInfo getInfo ();
+
+    /**
+     * 获取模块启动时的类扫描结果.
+     * <p>其他子系统可以从中筛选自己关心的托管类，而不必再次扫描模块的包</p>
+     * @return 扫描结果。若模块没有被扫描（比如没有标注 {@code @AModule}）返回 {@code null}，默认实现总是返回 {@code null}
+     * @since 1.1.0
+     */
+    default ScanResult getScanResult () {
+        return null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package org.dreamwork.integration.api;
+
+import java.lang.annotation.Annotation;
+import java.util.*;
+
+/**
+ * 模块的类扫描结果.
+ *
+ * <p>框架在启动模块时扫描 {@link org.dreamwork.integration.api.annotation.AModule} 指定的包，
+ * 找出所有的托管类（标注了 {@code @Resource} 的类）。扫描结果保存在模块容器中，
+ * 可以通过 {@link IModuleContext#getScanResult()} 获取，其他子系统（比如 httpd 服务）
+ * 可以直接从中筛选自己关心的类，而不必再次扫描模块的包。</p>
+ * <p>扫描时还可以记录标注了其他注解的类（比如 {@code @ARestfulAPI}）的名称，参见 {@link #getCandidateNames(String, String)}。
+ * 这些类不一定是托管类，也不一定已被加载，记录它们时只读取编译期索引或字节码</p>
+ * <p>扫描结果是不可变的</p>
+ *
+ * @since 1.1.0
+ */
+public final class ScanResult {
+    /** 包名 -> 该包中（不包括子包）的托管类 */
+    private final Map<String, List<Class<?>>> classes;
+    /** 注解类名 -> 包名 -> 该包中（不包括子包）类本身标注了该注解的类名 */
+    private final Map<String, Map<String, List<String>>> candidates;
+
+    /**
+     * @param classes 包名 -> 该包中（不包括子包）被扫描器接受的类。已扫描但没有匹配类的包对应空列表
+     */
+    public ScanResult (Map<String, ? extends Collection<Class<?>>> classes) {
+        this (classes, Collections.<String, Map<String, List<String>>>emptyMap ());
+    }
+
+    /**
+     * @param classes    包名 -> 该包中（不包括子包）被扫描器接受的类。已扫描但没有匹配类的包对应空列表
+     * @param candidates 注解类名 -> 包名 -> 该包中（不包括子包）类本身标注了该注解的类名。
+     *                   已记录但没有匹配类的包对应空列表
+     */
+    public ScanResult (Map<String, ? extends Collection<Class<?>>> classes,
+                       Map<String, ? extends Map<String, ? extends Collection<String>>> candidates) {
+        Map<String, List<Class<?>>> map = new HashMap<> (classes.size ());
+        classes.forEach ((k, v) -> map.put (k, Collections.unmodifiableList (new ArrayList<> (v))));
+        this.classes = Collections.unmodifiableMap (map);
+
+        Map<String, Map<String, List<String>>> names = new HashMap<> (candidates.size ());
+        candidates.forEach ((annotation, packages) -> {
+            Map<String, List<String>> m = new HashMap<> (packages.size ());
+            packages.forEach ((k, v) -> m.put (k, Collections.unmodifiableList (new ArrayList<> (v))));
+            names.put (annotation, Collections.unmodifiableMap (m));
+        });
+        this.candidates = Collections.unmodifiableMap (names);
+    }
+
+    /**
+     * 已被扫描的所有包名
+     * @return 包名集合
+     */
+    public Set<String> getPackages () {
+        return classes.keySet ();
+    }
+
+    /**
+     * 指定的包是否已被扫描
+     * @param packageName 包名
+     * @return 已被扫描返回 {@code true}
+     */
+    public boolean contains (String packageName) {
+        return classes.containsKey (packageName);
+    }
+
+    /**
+     * 获取指定包中（不包括子包）的托管类
+     * @param packageName 包名
+     * @return 托管类列表，若该包未被扫描返回空列表
+     */
+    public List<Class<?>> getClasses (String packageName) {
+        List<Class<?>> list = classes.get (packageName);
+        return list == null ? Collections.<Class<?>>emptyList () : list;
+    }
+
+    /**
+     * 获取指定包中（不包括子包）标注了指定注解的托管类
+     * @param packageName 包名
+     * @param annotation  注解类型
+     * @return 托管类列表
+     */
+    public List<Class<?>> getClasses (String packageName, Class<? extends Annotation> annotation) {
+        List<Class<?>> list = new ArrayList<> ();
+        for (Class<?> type : getClasses (packageName)) {
+            if (type.isAnnotationPresent (annotation)) {
+                list.add (type);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 指定包中标注了指定注解的类是否已被记录
+     * @param annotation  注解的类名
+     * @param packageName 包名
+     * @return 已被记录返回 {@code true}
+     * @since 1.1.0
+     */
+    public boolean hasCandidates (String annotation, String packageName) {
+        Map<String, List<String>> map = candidates.get (annotation);
+        return map != null && map.containsKey (packageName);
+    }
+
+    /**
+     * 获取指定包中（不包括子包）类本身标注了指定注解的类名，包括不是托管类的类
+     * @param annotation  注解的类名
+     * @param packageName 包名
+     * @return 类的二进制名称，若没有被记录返回空列表，参见 {@link #hasCandidates(String, String)}
+     * @since 1.1.0
+     */
+    public List<String> getCandidateNames (String annotation, String packageName) {
+        Map<String, List<String>> map = candidates.get (annotation);
+        List<String> list = map == null ? null : map.get (packageName);
+        return list == null ? Collections.<String>emptyList () : list;
+    }
+
+    /**
+     * 获取记录的所有注解类名 -> 包名 -> 类名
+     * @return 记录的类名
+     * @since 1.1.0
+     */
+    public Map<String, Map<String, List<String>>> getCandidateNames () {
+        return candidates;
+    }
+
+    /**
+     * 获取所有标注了指定注解的托管类
+     * @param annotation 注解类型
+     * @return 托管类列表
+     */
+    public List<Class<?>> getClasses (Class<? extends Annotation> annotation) {
+        List<Class<?>> list = new ArrayList<> ();
+        for (String packageName : classes.keySet ()) {
+            list.addAll (getClasses (packageName, annotation));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,29 @@
+package org.dreamwork.integration.api;
+
+/**
+ * 预解析的服务句柄.
+ *
+ * <p>通过 {@link IModuleContext#serviceHandle(Class)} 或 {@link IModuleContext#serviceHandle(String)} 获取。
+ * 句柄在第一次访问时解析服务并缓存引用，之后的访问不再查询框架的服务注册表；
+ * 当注册表发生变化（比如提供服务的模块被停止或重新部署）时，缓存自动失效，下一次访问时重新绑定。</p>
+ * <p>因此，模块可以在热点路径上（比如每个 http 请求，每条 mqtt 消息）长期持有句柄，而不必每次都调用
+ * {@link IModuleContext#findService(Class)}</p>
+ *
+ * @param <T> 服务类型
+ * @since 1.1.0
+ */
+public interface ServiceHandle<T> {
+    /**
+     * 获取当前绑定的服务实例
+     * @return 服务实例。若服务当前未注册，返回 {@code null}
+     */
+    T get ();
+
+    /**
+     * 当前是否有服务实例可用
+     * @return 若有服务实例可用返回 {@code true}，否则返回 {@code false}
+     */
+    default boolean isPresent () {
+        return get () != null;
+    }
+}
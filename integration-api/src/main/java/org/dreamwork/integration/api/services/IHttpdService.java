@@ -12,4 +12,27 @@ public interface IHttpdService {
     void attach (IModuleContext context, Path workdir);
 
     void detach (ModuleInfo module);
+
+    /**
+     * 排空指定模块的 web 请求.
+     * <p>调用后，httpd 服务不再向该模块分派新的请求，并等待正在处理的请求完成，最多等待 {@code timeout} 毫秒。
+     * 框架在停止模块之前调用该方法</p>
+     * @param module  模块信息
+     * @param timeout 最长等待时间，单位毫秒
+     * @return 若所有正在处理的请求都已完成返回 {@code true}，超时返回 {@code false}
+     * @since 1.1.0
+     */
+    default boolean drain (ModuleInfo module, long timeout) {
+        return true;
+    }
+
+    /**
+     * 使模块的 restful api 响应缓存失效.
+     * @param module 模块信息
+     * @param cache  缓存名称，为 {@code null} 时清空模块的所有响应缓存
+     * @param key    组成缓存键的参数值，顺序和缓存声明的键一致；为空时清空指定缓存的所有条目
+     * @since 1.1.0
+     */
+    default void invalidate (ModuleInfo module, String cache, Object... key) {
+    }
 }
\ No newline at end of file
@@ -37,4 +37,17 @@ public interface IMqttService {
     void unregister (String name);
 
     String getServerUrl (String configName);
+
+    /**
+     * 排空指定配置的消息.
+     * <p>取消该配置下的所有订阅，不再接收新的消息，并等待已经收到的消息处理完成，最多等待 {@code timeout} 毫秒。
+     * 框架在停止模块之前对模块注册的每个 mqtt 配置调用该方法</p>
+     * @param configName mqtt配置名称
+     * @param timeout    最长等待时间，单位毫秒
+     * @return 若所有已收到的消息都已处理完成返回 {@code true}，超时返回 {@code false}
+     * @since 1.1.0
+     */
+    default boolean drain (String configName, long timeout) {
+        return true;
+    }
 }
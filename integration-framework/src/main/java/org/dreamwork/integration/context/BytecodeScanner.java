@@ -0,0 +1,241 @@
+package org.dreamwork.integration.context;
+
+import org.dreamwork.util.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * 字节码级别的类扫描器.
+ *
+ * <p>直接读取类加载器 classpath 上的 jar 文件（或目录）中的 {@code .class} 文件，通过 {@link ClassFileReader}
+ * 判断类是否标注了指定的注解，整个过程不会加载任何类。多个 jar 文件并行读取。</p>
+ * <p>只支持 {@link URLClassLoader}，对于其他类加载器 {@link #of(ClassLoader)} 返回 {@code null}，
+ * 调用者应该回退到常规的扫描方式。</p>
+ *
+ * @since 1.1.0
+ */
+final class BytecodeScanner {
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String PACKAGE_INFO = "package-info.class";
+
+    private final Logger logger = LoggerFactory.getLogger (BytecodeScanner.class);
+    private final List<Path> paths;
+
+    private BytecodeScanner (List<Path> paths) {
+        this.paths = paths;
+    }
+
+    /**
+     * 为指定的类加载器创建扫描器
+     * @param loader 类加载器
+     * @return 扫描器，若类加载器不支持字节码扫描返回 {@code null}
+     */
+    static BytecodeScanner of (ClassLoader loader) {
+        if (!(loader instanceof URLClassLoader)) {
+            return null;
+        }
+        URL[] urls = ((URLClassLoader) loader).getURLs ();
+        if (urls == null || urls.length == 0) {
+            return null;
+        }
+        List<Path> paths = new ArrayList<> (urls.length);
+        for (URL url : urls) {
+            if (!"file".equals (url.getProtocol ())) {
+                // 无法直接读取的位置
+                return null;
+            }
+            try {
+                Path path = Paths.get (url.toURI ());
+                if (Files.exists (path)) {
+                    paths.add (path);
+                }
+            } catch (URISyntaxException | IllegalArgumentException ex) {
+                return null;
+            }
+        }
+        return new BytecodeScanner (paths);
+    }
+
+    /**
+     * 一次遍历所有 jar 条目，找出指定包及其所有子包
+     * @param bases 基础包名
+     * @return 包名集合，包括基础包本身（若存在）
+     */
+    Set<String> findPackages (Collection<String> bases) {
+        Set<String> packages = ConcurrentHashMap.newKeySet ();
+        paths.parallelStream ().forEach (path -> {
+            try {
+                forEachEntry (path, name -> {
+                    String pkg = packageOf (name);
+                    if (pkg != null && matches (pkg, bases)) {
+                        packages.add (pkg);
+                    }
+                });
+            } catch (IOException ex) {
+                logger.warn ("cannot list entries of {}: {}", path, ex.getMessage ());
+            }
+        });
+        return packages;
+    }
+
+    /**
+     * 在指定的包中（不包括子包）查找类级别标注了指定注解的类
+     * @param packages   包名
+     * @param annotation 注解类型
+     * @return 包名 -> 匹配的类名列表。在 classpath 中不存在的包不会出现在结果中，
+     *         存在但没有匹配类的包对应一个空的列表
+     */
+    Map<String, List<String>> scan (Collection<String> packages, Class<? extends Annotation> annotation) {
+        String name = annotation.getName ();
+        return scan (packages, Collections.singleton (name)).get (name);
+    }
+
+    /**
+     * 在指定的包中（不包括子包）一次查找类级别标注了多个注解中任意一个的类，每个 class 文件只读取一次
+     * @param packages    包名
+     * @param annotations 注解的类名
+     * @return 注解类名 -> 包名 -> 匹配的类名列表。在 classpath 中不存在的包不会出现在结果中，
+     *         存在但没有匹配类的包对应一个空的列表
+     */
+    Map<String, Map<String, List<String>>> scan (Collection<String> packages, Collection<String> annotations) {
+        Map<String, String> descriptors = new HashMap<> (annotations.size ());
+        Map<String, Map<String, List<String>>> result = new HashMap<> (annotations.size ());
+        for (String annotation : annotations) {
+            descriptors.put (ClassFileReader.descriptorOf (annotation), annotation);
+            result.put (annotation, new ConcurrentHashMap<> ());
+        }
+        Set<String> dirs = new HashSet<> (packages.size ());
+        for (String p : packages) {
+            dirs.add (p.replace ('.', '/'));
+        }
+
+        paths.parallelStream ().forEach (path -> {
+            try {
+                forEachClass (path, dirs, (name, in) -> {
+                    if (name.endsWith (PACKAGE_INFO)) {
+                        return;
+                    }
+                    String pkg = packageOf (name);
+                    // 存在但没有匹配类的包也要出现在结果中
+                    for (Map<String, List<String>> map : result.values ()) {
+                        map.computeIfAbsent (pkg, k -> Collections.synchronizedList (new ArrayList<> ()));
+                    }
+                    try {
+                        for (String descriptor : ClassFileReader.readAnnotations (IOUtil.read (in))) {
+                            String annotation = descriptors.get (descriptor);
+                            if (annotation != null) {
+                                result.get (annotation).get (pkg)
+                                      .add (name.substring (0, name.length () - CLASS_SUFFIX.length ()).replace ('/', '.'));
+                            }
+                        }
+                    } catch (IOException | RuntimeException ex) {
+                        logger.warn ("cannot read class file {} in {}: {}", name, path, ex.getMessage ());
+                    }
+                });
+            } catch (IOException ex) {
+                logger.warn ("cannot scan {}: {}", path, ex.getMessage ());
+            }
+        });
+        return result;
+    }
+
+    private static boolean matches (String pkg, Collection<String> bases) {
+        for (String base : bases) {
+            if (pkg.equals (base) || pkg.startsWith (base) && pkg.length () > base.length () && pkg.charAt (base.length ()) == '.') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 获取条目所在的包名
+     * @param name 条目名称，目录以 {@code /} 结尾
+     * @return 包名，若在默认包或 {@code META-INF} 中返回 {@code null}
+     */
+    private static String packageOf (String name) {
+        if (name.startsWith ("META-INF/")) {
+            return null;
+        }
+        int end = name.endsWith ("/") ? name.length () - 1 : name.lastIndexOf ('/');
+        return end <= 0 ? null : name.substring (0, end).replace ('/', '.');
+    }
+
+    private static void forEachEntry (Path path, EntryVisitor visitor) throws IOException {
+        if (Files.isDirectory (path)) {
+            try (Stream<Path> stream = Files.walk (path)) {
+                stream.forEach (p -> {
+                    String name = path.relativize (p).toString ().replace (File.separatorChar, '/');
+                    if (!name.isEmpty ()) {
+                        visitor.visit (Files.isDirectory (p) ? name + '/' : name);
+                    }
+                });
+            }
+        } else {
+            try (JarFile jar = new JarFile (path.toFile ())) {
+                for (Enumeration<JarEntry> e = jar.entries (); e.hasMoreElements (); ) {
+                    visitor.visit (e.nextElement ().getName ());
+                }
+            }
+        }
+    }
+
+    private static void forEachClass (Path path, Set<String> dirs, ClassVisitor visitor) throws IOException {
+        if (Files.isDirectory (path)) {
+            for (String dir : dirs) {
+                Path p = path.resolve (dir);
+                if (Files.isDirectory (p)) {
+                    try (Stream<Path> stream = Files.list (p)) {
+                        stream.filter (f -> f.getFileName ().toString ().endsWith (CLASS_SUFFIX)).forEach (f -> {
+                            try (InputStream in = Files.newInputStream (f)) {
+                                visitor.visit (dir + '/' + f.getFileName (), in);
+                            } catch (IOException ex) {
+                                throw new UncheckedIOException (ex);
+                            }
+                        });
+                    } catch (UncheckedIOException ex) {
+                        throw ex.getCause ();
+                    }
+                }
+            }
+        } else {
+            try (JarFile jar = new JarFile (path.toFile ())) {
+                for (Enumeration<JarEntry> e = jar.entries (); e.hasMoreElements (); ) {
+                    JarEntry entry = e.nextElement ();
+                    String name = entry.getName ();
+                    int slash = name.lastIndexOf ('/');
+                    if (slash > 0 && name.endsWith (CLASS_SUFFIX) && dirs.contains (name.substring (0, slash))) {
+                        try (InputStream in = jar.getInputStream (entry)) {
+                            visitor.visit (name, in);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private interface EntryVisitor {
+        void visit (String name);
+    }
+
+    private interface ClassVisitor {
+        void visit (String name, InputStream in) throws IOException;
+    }
+}
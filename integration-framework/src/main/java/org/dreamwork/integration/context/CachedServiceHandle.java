@@ -0,0 +1,57 @@
+package org.dreamwork.integration.context;
+
+import org.dreamwork.integration.api.ServiceHandle;
+
+/**
+ * 基于注册表版本号的服务句柄.
+ *
+ * <p>句柄缓存最近一次解析的结果及当时注册表的版本号，只要版本号未变化就直接返回缓存的引用；
+ * 注册表的任何变化（注册，反注册，模块清理）都会使版本号增加，从而使缓存失效</p>
+ *
+ * @since 1.1.0
+ */
+final class CachedServiceHandle<T> implements ServiceHandle<T> {
+    private final ModuleContextImpl context;
+    private final Class<T> type;
+    private final String name;
+
+    private volatile Binding<T> binding;
+
+    CachedServiceHandle (ModuleContextImpl context, Class<T> type, String name) {
+        this.context = context;
+        this.type    = type;
+        this.name    = name;
+    }
+
+    @Override
+    public T get () {
+        SimpleServiceRouter router = context.getServiceRouter ();
+        if (router == null) {
+            return null;
+        }
+
+        // 必须在解析之前读取版本号，若解析期间注册表发生变化，下一次访问会重新解析
+        long version = router.getVersion ();
+        Binding<T> b = binding;
+        if (b == null || b.version != version) {
+            T value = name != null ? context.findService (name) : context.findService (type);
+            binding = b = new Binding<> (version, value);
+        }
+        return b.value;
+    }
+
+    @Override
+    public String toString () {
+        return "ServiceHandle[" + (name != null ? name : type.getName ()) + "]";
+    }
+
+    private static final class Binding<T> {
+        final long version;
+        final T value;
+
+        Binding (long version, T value) {
+            this.version = version;
+            this.value   = value;
+        }
+    }
+}
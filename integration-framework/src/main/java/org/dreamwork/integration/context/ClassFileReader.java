@@ -0,0 +1,208 @@
+package org.dreamwork.integration.context;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 极简的 class 文件读取器.
+ *
+ * <p>只解析常量池和类级别的 {@code RuntimeVisibleAnnotations} 属性，用于在不加载类的前提下
+ * 判断一个类是否标注了某个注解。字段、方法及其属性都被直接跳过。</p>
+ *
+ * @since 1.1.0
+ */
+final class ClassFileReader {
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+    private final byte[] data;
+    private int pos;
+    /** 每个常量池项在 data 中的偏移量，指向 tag 之后的第一个字节 */
+    private int[] offsets;
+    private byte[] tags;
+
+    private ClassFileReader (byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * 读取类级别的运行时可见注解
+     * @param data class 文件的内容
+     * @return 注解类型的描述符集合，如 {@code Ljavax/annotation/Resource;}
+     * @throws IOException 不是合法的 class 文件
+     */
+    static Set<String> readAnnotations (byte[] data) throws IOException {
+        return new ClassFileReader (data).read ();
+    }
+
+    /**
+     * 将类名转换成描述符
+     * @param type 类型
+     * @return 描述符
+     */
+    static String descriptorOf (Class<?> type) {
+        return descriptorOf (type.getName ());
+    }
+
+    /**
+     * 将类名转换成描述符
+     * @param className 类的二进制名称
+     * @return 描述符
+     */
+    static String descriptorOf (String className) {
+        return 'L' + className.replace ('.', '/') + ';';
+    }
+
+    private Set<String> read () throws IOException {
+        if (data.length < 10 || u4 () != MAGIC) {
+            throw new IOException ("invalid class file");
+        }
+        pos += 4;                       // minor & major version
+        readConstantPool ();
+        pos += 6;                       // access flags, this class, super class
+        int interfaces = u2 ();
+        pos += 2 * interfaces;
+        skipMembers ();                 // fields
+        skipMembers ();                 // methods
+
+        Set<String> annotations = null;
+        int count = u2 ();
+        for (int i = 0; i < count; i ++) {
+            int name   = u2 ();
+            int length = u4 ();
+            int end    = pos + length;
+            if (RUNTIME_VISIBLE_ANNOTATIONS.equals (utf8 (name))) {
+                int n = u2 ();
+                annotations = new HashSet<> (n);
+                for (int j = 0; j < n; j ++) {
+                    annotations.add (utf8 (u2 ()));
+                    skipElementValuePairs ();
+                }
+            }
+            pos = end;
+        }
+        return annotations == null ? Collections.<String>emptySet () : annotations;
+    }
+
+    private void readConstantPool () throws IOException {
+        int count = u2 ();
+        offsets = new int[count];
+        tags    = new byte[count];
+        for (int i = 1; i < count; i ++) {
+            byte tag = data[pos ++];
+            tags[i] = tag;
+            offsets[i] = pos;
+            switch (tag) {
+                case 1:                 // Utf8
+                    pos += 2 + u2 (pos);
+                    break;
+                case 3: case 4:         // Integer, Float
+                case 9: case 10: case 11: case 12:  // Field/Method/InterfaceMethod ref, NameAndType
+                case 17: case 18:       // Dynamic, InvokeDynamic
+                    pos += 4;
+                    break;
+                case 5: case 6:         // Long, Double 占两个位置
+                    pos += 8;
+                    i ++;
+                    break;
+                case 7: case 8: case 16: case 19: case 20:  // Class, String, MethodType, Module, Package
+                    pos += 2;
+                    break;
+                case 15:                // MethodHandle
+                    pos += 3;
+                    break;
+                default:
+                    throw new IOException ("unknown constant pool tag: " + tag);
+            }
+        }
+    }
+
+    private void skipMembers () {
+        int count = u2 ();
+        for (int i = 0; i < count; i ++) {
+            pos += 6;                   // access flags, name, descriptor
+            int attributes = u2 ();
+            for (int j = 0; j < attributes; j ++) {
+                pos += 2;
+                int length = u4 ();
+                pos += length;
+            }
+        }
+    }
+
+    private void skipElementValuePairs () throws IOException {
+        int pairs = u2 ();
+        for (int i = 0; i < pairs; i ++) {
+            pos += 2;                   // element name
+            skipElementValue ();
+        }
+    }
+
+    private void skipElementValue () throws IOException {
+        char tag = (char) data[pos ++];
+        switch (tag) {
+            case 'B': case 'C': case 'D': case 'F': case 'I': case 'J': case 'S': case 'Z':
+            case 's': case 'c':
+                pos += 2;
+                break;
+            case 'e':
+                pos += 4;
+                break;
+            case '@':
+                pos += 2;
+                skipElementValuePairs ();
+                break;
+            case '[': {
+                int n = u2 ();
+                for (int i = 0; i < n; i ++) {
+                    skipElementValue ();
+                }
+                break;
+            }
+            default:
+                throw new IOException ("unknown element value tag: " + tag);
+        }
+    }
+
+    private String utf8 (int index) throws IOException {
+        if (index <= 0 || index >= tags.length || tags[index] != 1) {
+            throw new IOException ("invalid utf8 constant index: " + index);
+        }
+        int offset = offsets[index];
+        int length = u2 (offset);
+        // 绝大多数类名和属性名都是 ascii
+        boolean ascii = true;
+        for (int i = offset + 2, end = offset + 2 + length; i < end; i ++) {
+            if (data[i] < 0 || data[i] == 0) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            return new String (data, offset + 2, length, StandardCharsets.ISO_8859_1);
+        }
+        // modified utf-8
+        return new DataInputStream (new ByteArrayInputStream (data, offset, length + 2)).readUTF ();
+    }
+
+    private int u2 () {
+        int value = u2 (pos);
+        pos += 2;
+        return value;
+    }
+
+    private int u2 (int offset) {
+        return ((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff);
+    }
+
+    private int u4 () {
+        int value = ((data[pos] & 0xff) << 24) | ((data[pos + 1] & 0xff) << 16) | ((data[pos + 2] & 0xff) << 8) | (data[pos + 3] & 0xff);
+        pos += 4;
+        return value;
+    }
+}
@@ -1,16 +1,17 @@
 package org.dreamwork.integration.context;
 
+import org.dreamwork.integration.api.ClassIndex;
+import org.dreamwork.integration.api.ScanResult;
 import org.dreamwork.util.ResourceUtil;
 import org.dreamwork.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Resource;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 /**
  * 基本的类扫描器
@@ -19,6 +20,16 @@ public abstract class ClassScanner {
     private final Logger logger = LoggerFactory.getLogger (ClassScanner.class);
 
     protected final ClassLoader classloader;
+    /** 包名 -> 被接受的类 @since 1.1.0 */
+    private final Map<String, List<Class<?>>> accepted = new LinkedHashMap<> ();
+    /** 上一次启动时缓存的扫描结果 @since 1.1.0 */
+    private Map<String, ? extends Collection<String>> cached;
+    /** 注解类名 -> 包名 -> 记录的候选类名 @since 1.1.0 */
+    private final Map<String, Map<String, List<String>>> recorded = new LinkedHashMap<> ();
+    /** 上一次启动时缓存的候选类 @since 1.1.0 */
+    private Map<String, ? extends Map<String, ? extends Collection<String>>> cachedCandidates;
+    /** 只记录候选类的包 @since 1.1.0 */
+    private final Set<String> candidatePackages = new LinkedHashSet<> ();
 
     public ClassScanner (ClassLoader classloader) {
         this.classloader = classloader;
@@ -33,17 +44,94 @@ public abstract class ClassScanner {
     public void scan (String... packageNames) throws Exception {
         Set<Wrapper> wrappers = new HashSet<> ();
         try {
+            Class<? extends Annotation> candidate = getCandidateAnnotation ();
+            String kind = candidate == null ? null : ClassIndex.kindOf (candidate.getName ());
+            Set<String> annotations = getRecordedAnnotations ();
+            boolean indexed = kind != null;
+            for (String annotation : annotations) {
+                indexed |= ClassIndex.kindOf (annotation) != null;
+            }
+            ClassIndex index = indexed ? ClassIndex.load (classloader) : null;
+            Set<String> recordPackages = new LinkedHashSet<> (Arrays.asList (packageNames));
+            recordPackages.addAll (candidatePackages);
+
+            // 没有被编译期索引覆盖的包，先尝试在字节码层面找出候选类，所有注解在一次遍历中完成
+            Map<String, Map<String, List<String>>> found = null;
+            Set<String> rest = new HashSet<> ();
+            if (candidate != null) {
+                for (String packageName : packageNames) {
+                    if ((cached == null || !cached.containsKey (packageName)) && (index == null || !index.covers (packageName))) {
+                        rest.add (packageName);
+                    }
+                }
+            }
+            for (String annotation : annotations) {
+                for (String packageName : recordPackages) {
+                    if (!isCached (annotation, packageName) && !isIndexed (index, annotation, packageName)) {
+                        rest.add (packageName);
+                    }
+                }
+            }
+            BytecodeScanner scanner;
+            if (!rest.isEmpty () && (scanner = BytecodeScanner.of (classloader)) != null) {
+                Set<String> names = new LinkedHashSet<> (annotations);
+                if (candidate != null) {
+                    names.add (candidate.getName ());
+                }
+                found = scanner.scan (rest, names);
+            }
+            Map<String, List<String>> candidates = found == null || candidate == null ? null : found.get (candidate.getName ());
+
+            // 加载了包内所有类的包，记录候选类时直接使用
+            Map<String, List<Class<?>>> loaded = new HashMap<> ();
             Set<Class<?>> matchedClasses = new HashSet<> ();
             for (String packageName : packageNames) {
-                List<Class<?>> list = ResourceUtil.getClasses (packageName, classloader);
+                List<Class<?>> list;
+                if (cached != null && cached.containsKey (packageName)) {
+                    // 模块没有变化，直接加载上次扫描的结果
+                    list = loadClasses (cached.get (packageName));
+                } else if (index != null && index.covers (packageName)) {
+                    // 有编译期索引，只加载索引中列出的类
+                    list = loadClasses (index.getClassNames (kind, packageName));
+                } else if (candidates != null && candidates.containsKey (packageName)) {
+                    // 只加载字节码中标注了注解的类
+                    list = loadClasses (candidates.get (packageName));
+                } else {
+                    list = ResourceUtil.getClasses (packageName, classloader);
+                    loaded.put (packageName, list);
+                }
+                List<Class<?>> accepted = this.accepted.computeIfAbsent (packageName, k -> new ArrayList<> ());
                 if (!list.isEmpty ()) {
                     for (Class<?> type : list) {
                         if (accept (type)) {
                             matchedClasses.add (type);
+                            accepted.add (type);
                         }
                     }
                 }
             }
+
+            for (String annotation : annotations) {
+                Map<String, List<String>> map = recorded.computeIfAbsent (annotation, k -> new LinkedHashMap<> ());
+                Map<String, List<String>> scanned = found == null ? null : found.get (annotation);
+                for (String packageName : recordPackages) {
+                    if (isCached (annotation, packageName)) {
+                        map.put (packageName, new ArrayList<> (cachedCandidates.get (annotation).get (packageName)));
+                    } else if (isIndexed (index, annotation, packageName)) {
+                        map.put (packageName, new ArrayList<> (index.getClassNames (ClassIndex.kindOf (annotation), packageName)));
+                    } else if (scanned != null && scanned.containsKey (packageName)) {
+                        map.put (packageName, new ArrayList<> (scanned.get (packageName)));
+                    } else {
+                        List<Class<?>> list = loaded.get (packageName);
+                        if (list == null) {
+                            list = ResourceUtil.getClasses (packageName, classloader);
+                            loaded.put (packageName, list);
+                        }
+                        map.put (packageName, annotated (list, annotation));
+                    }
+                }
+            }
+
             if (!matchedClasses.isEmpty ()) {
                 for (Class<?> type : matchedClasses) {
                     try {
@@ -64,6 +152,108 @@ public abstract class ClassScanner {
         }
     }
 
+    /**
+     * 设置上一次启动时缓存的扫描结果。缓存中存在的包将不再被扫描，直接加载其中列出的类
+     * @param cached 包名 -> 类名
+     * @since 1.1.0
+     */
+    public void setCachedClasses (Map<String, ? extends Collection<String>> cached) {
+        this.cached = cached;
+    }
+
+    /**
+     * 设置上一次启动时缓存的候选类，参见 {@link #getRecordedAnnotations()}
+     * @param cached 注解类名 -> 包名 -> 类名
+     * @since 1.1.0
+     */
+    public void setCachedCandidates (Map<String, ? extends Map<String, ? extends Collection<String>>> cached) {
+        this.cachedCandidates = cached;
+    }
+
+    /**
+     * 设置只需要记录候选类的包，这些包中的类不会被 {@link #accept(Class)}
+     * @param packageNames 包名
+     * @since 1.1.0
+     */
+    public void setCandidatePackages (String... packageNames) {
+        candidatePackages.clear ();
+        if (packageNames != null) {
+            candidatePackages.addAll (Arrays.asList (packageNames));
+        }
+    }
+
+    /**
+     * 获取扫描结果，包含所有被扫描的包及其中被 {@link #accept(Class)} 接受的类，
+     * 以及记录的候选类
+     * @return 扫描结果
+     * @since 1.1.0
+     */
+    public ScanResult getScanResult () {
+        return new ScanResult (accepted, recorded);
+    }
+
+    /**
+     * 扫描器所需的类在类级别上必须标注的注解.
+     * <p>若返回非 {@code null} 值，扫描器将优先通过编译期索引（参见 {@link ClassIndex}）或直接读取字节码的方式
+     * 找出标注了该注解的候选类，只加载这些类；都无法使用时才加载包内所有的类。
+     * 候选类仍然需要通过 {@link #accept(Class)} 的检查。默认返回 {@code null}，即加载包内所有的类</p>
+     * @return 注解类型
+     * @since 1.1.0
+     */
+    protected Class<? extends Annotation> getCandidateAnnotation () {
+        return null;
+    }
+
+    /**
+     * 需要在扫描结果中记录的其他类级别注解.
+     * <p>扫描器在所有被扫描的包和 {@link #setCandidatePackages(String...) 候选包} 中，
+     * 通过编译期索引或字节码找出标注了这些注解的类名，保存在扫描结果中供其他子系统使用，
+     * 这些类不必被 {@link #accept(Class)} 接受。注解以类名给出，扫描器不必能加载注解类。默认没有</p>
+     * @return 注解的类名
+     * @since 1.1.0
+     */
+    protected Set<String> getRecordedAnnotations () {
+        return Collections.emptySet ();
+    }
+
+    private boolean isCached (String annotation, String packageName) {
+        Map<String, ? extends Collection<String>> map = cachedCandidates == null ? null : cachedCandidates.get (annotation);
+        return map != null && map.containsKey (packageName);
+    }
+
+    private static boolean isIndexed (ClassIndex index, String annotation, String packageName) {
+        return index != null && ClassIndex.kindOf (annotation) != null && index.covers (packageName);
+    }
+
+    /** 已加载的类中，类本身标注了指定注解的类名 */
+    private static List<String> annotated (List<Class<?>> classes, String annotation) {
+        List<String> names = new ArrayList<> ();
+        for (Class<?> type : classes) {
+            for (Annotation an : type.getDeclaredAnnotations ()) {
+                if (an.annotationType ().getName ().equals (annotation)) {
+                    names.add (type.getName ());
+                    break;
+                }
+            }
+        }
+        return names;
+    }
+
+    private List<Class<?>> loadClasses (Collection<String> names) {
+        if (logger.isTraceEnabled ()) {
+            logger.trace ("{} candidate class(es) found: {}", names.size (), names);
+        }
+        List<Class<?>> list = new ArrayList<> (names.size ());
+        for (String name : names) {
+            try {
+                list.add (classloader.loadClass (name));
+            } catch (ClassNotFoundException | LinkageError ex) {
+                logger.warn ("cannot load indexed class {}: {}", name, ex.getMessage ());
+            }
+        }
+        return list;
+    }
+
     /**
      * 当扫描器扫描到一个类时调用这个方法来验证是否是所需的，若是，则触发 {@link #onFound(String, Class, Set)} 事件
      * @param type java 类
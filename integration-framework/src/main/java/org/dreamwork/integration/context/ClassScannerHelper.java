@@ -6,6 +6,10 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -15,48 +19,63 @@ import java.util.Set;
  */
 public class ClassScannerHelper {
     public static void fillPackageNames (ClassLoader loader, String base, Set<String> list) throws IOException {
-        String path = base.replace ('.', '/');
-        try (InputStream in = loader.getResourceAsStream (path)) {
-            if (in != null) {
-                BufferedReader reader = new BufferedReader (new InputStreamReader (in));
-                String line;
-                while ((line = reader.readLine ()) != null) {
-                    if (!line.contains (".")) {
-                        list.add (base + "." + line);
-
-                        fillPackageNames (loader, base + "." + line, list);
-                    }
-                }
-            }
-        }
+        fillSubPackages (loader, Collections.singleton (base), list);
     }
 
     public static void fillPackageNames (Class<?> type, AModule am, ClassLoader loader, Set<String> packages) throws IOException {
-        String base = type.getPackage ().getName ();
-        packages.add (base);
-        if (am.recursive ()) {
-            fillPackageNames (loader, base, packages);
-        }
+        List<String> bases = new ArrayList<> ();
+        bases.add (type.getPackage ().getName ());
 
         String[] array = am.value ();
         if (array.length == 0) {
             array = am.scanPackages ();
         }
+        Collections.addAll (bases, array);
 
-        for (String packageName : array) {
-            packages.add (packageName);
-            if (am.recursive ()) {
-                fillPackageNames (loader, packageName, packages);
-            }
+        packages.addAll (bases);
+        if (am.recursive ()) {
+            fillSubPackages (loader, bases, packages);
         }
     }
 
     public static void fillPackageNames (String base, String[] array, ClassLoader loader, Set<String> packages) throws IOException {
-        packages.add (base);
-        fillPackageNames (loader, base, packages);
-        for (String packageName : array) {
-            packages.add (packageName);
-            fillPackageNames (loader, packageName, packages);
+        List<String> bases = new ArrayList<> ();
+        bases.add (base);
+        Collections.addAll (bases, array);
+
+        packages.addAll (bases);
+        fillSubPackages (loader, bases, packages);
+    }
+
+    /**
+     * 查找所有基础包的子包.
+     * <p>能直接读取 classpath 时，一次遍历所有 jar 的条目找出所有的子包；否则逐级列出资源目录</p>
+     */
+    private static void fillSubPackages (ClassLoader loader, Collection<String> bases, Set<String> packages) throws IOException {
+        BytecodeScanner scanner = BytecodeScanner.of (loader);
+        if (scanner != null) {
+            packages.addAll (scanner.findPackages (bases));
+        } else {
+            for (String base : bases) {
+                listPackages (loader, base, packages);
+            }
+        }
+    }
+
+    private static void listPackages (ClassLoader loader, String base, Set<String> list) throws IOException {
+        String path = base.replace ('.', '/');
+        try (InputStream in = loader.getResourceAsStream (path)) {
+            if (in != null) {
+                BufferedReader reader = new BufferedReader (new InputStreamReader (in));
+                String line;
+                while ((line = reader.readLine ()) != null) {
+                    if (!line.contains (".")) {
+                        list.add (base + "." + line);
+
+                        listPackages (loader, base + "." + line, list);
+                    }
+                }
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,7 @@ package org.dreamwork.integration.context;
 
 import org.dreamwork.integration.api.IModuleContext;
 import org.dreamwork.integration.api.annotation.AConfigured;
+import org.dreamwork.integration.util.Injectors;
 import org.dreamwork.config.IConfiguration;
 import org.dreamwork.util.StringUtil;
 import org.slf4j.Logger;
@@ -11,14 +12,19 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import java.beans.IntrospectionException;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.Set;
 
 import static org.dreamwork.integration.util.Helper.configureFields;
 
 public class ContextClassScanner extends ClassScanner {
+    /** @since 1.1.0 */
+    private static final Set<String> RECORDED = Collections.singleton ("org.dreamwork.integration.httpd.annotation.ARestfulAPI");
+
     private final Logger logger = LoggerFactory.getLogger (ContextClassScanner.class);
 
     private final ModuleContextImpl context;
@@ -30,6 +36,32 @@ public class ContextClassScanner extends ClassScanner {
         this.router  = router;
     }
 
+    @Override
+    public void scan (String... packageNames) throws Exception {
+        // 扫描期间批量注册，推迟发布服务注册表的快照
+        router.deferPublishing ();
+        try {
+            super.scan (packageNames);
+        } finally {
+            router.publishDeferred ();
+        }
+    }
+
+    @Override
+    protected Class<? extends Annotation> getCandidateAnnotation () {
+        return Resource.class;
+    }
+
+    /**
+     * 记录 restful 处理类，httpd 服务挂载模块时直接从扫描结果中获取，不再扫描模块的包。
+     * 框架不依赖于 httpd 的 api，通过名称引用注解
+     * @since 1.1.0
+     */
+    @Override
+    protected Set<String> getRecordedAnnotations () {
+        return RECORDED;
+    }
+
     @Override
     protected boolean accept (Class<?> type) {
         return type.isAnnotationPresent (Resource.class);
@@ -75,10 +107,7 @@ public class ContextClassScanner extends ClassScanner {
                     exposeName = rt.getSimpleName ();
                     exposeName = Character.toLowerCase (exposeName.charAt (0)) + exposeName.substring (1);
                 }
-                if (!mw.method.isAccessible ()) {
-                    mw.method.setAccessible (true);
-                }
-                Object o = mw.method.invoke (bean);
+                Object o = Injectors.invoke (mw.method, bean);
                 if (o == null) {
                     throw new IntrospectionException ("method " + mw.method + " returns a null object!");
                 }
@@ -95,6 +124,9 @@ public class ContextClassScanner extends ClassScanner {
 
     @Override
     protected void onCompleted (Set<Wrapper> wrappers) throws Exception {
+        // 依赖注入需要查询到扫描期间注册的所有对象
+        router.publishDeferred ();
+
         for (Wrapper w : wrappers) {
             if (logger.isTraceEnabled ()) {
                 logger.trace ("injecting fields in {}...", w.type);
@@ -128,7 +160,7 @@ public class ContextClassScanner extends ClassScanner {
 
         for (ClassScanner.Wrapper w : wrappers) {
             if (w.postConstruct != null) {
-                w.postConstruct.invoke (w.bean);
+                Injectors.invoke (w.postConstruct, w.bean);
             }
         }
         if (logger.isTraceEnabled ()) {
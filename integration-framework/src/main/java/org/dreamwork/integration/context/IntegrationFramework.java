@@ -8,6 +8,7 @@ import org.dreamwork.integration.api.services.IMqttService;
 import org.dreamwork.integration.api.services.ISystemService;
 import org.dreamwork.integration.internal.DataSourceModule;
 import org.dreamwork.integration.internal.DiscoveryModule;
+import org.dreamwork.integration.proxy.ServiceProxyFactory;
 import org.dreamwork.integration.services.IFrameworkService;
 import org.dreamwork.integration.services.impl.DataSourceService;
 import org.dreamwork.integration.services.impl.SystemServiceImpl;
@@ -37,6 +38,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Predicate;
@@ -74,8 +76,8 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
 
     private final Logger logger = LoggerFactory.getLogger (IntegrationFramework.class);
     private final PropertyConfiguration configuration;
-    private final Map<String, ModuleContextImpl> contexts = new HashMap<> ();
-    private final Set<ObjectName> names = new HashSet<> ();
+    private final Map<String, ModuleContextImpl> contexts = new ConcurrentHashMap<> ();
+    private final Set<ObjectName> names = ConcurrentHashMap.newKeySet ();
     private final SimpleServiceRouter router = new SimpleServiceRouter ();
     private final List<IModuleListener> listeners = new ArrayList<> ();
     private final String temp_dir, extra_dir, extServices_dir;
@@ -95,6 +97,11 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
 
     private DatagramSocket socket;
 
+    /** 启动时间线 @since 1.1.0 */
+    private final StartupTimeline timeline = new StartupTimeline ();
+    /** 启动缓存，只在加载外部模块期间有效 @since 1.1.0 */
+    private volatile StartupCache startupCache;
+
     public static final String VERSION = "1.1.0";
     public static final String PORT_FILE_NAME = ".port-number";
 
@@ -159,7 +166,9 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
         long start = System.currentTimeMillis ();
         try {
             // 为框架启动做准备
-            prepare ();
+            try (StartupTimeline.Span ignored = timeline.begin ("prepare")) {
+                prepare ();
+            }
 
             executor = Executors.newCachedThreadPool ();
             broadcaster = new LocalBroadcaster (executor);
@@ -173,13 +182,19 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
             router.registerService (dummy, ILocalBroadcastService.class, broadcaster);
 
             // 启动内部模块
-            startBuildInModule ();
+            try (StartupTimeline.Span ignored = timeline.begin ("startBuildInModule")) {
+                startBuildInModule ();
+            }
 
             // 加载各个外部模块导出的服务
-            loadExportedServices ();
+            try (StartupTimeline.Span ignored = timeline.begin ("loadExportedServices")) {
+                loadExportedServices ();
+            }
 
             // 加载外部模块
-            loadExtModules ();
+            try (StartupTimeline.Span ignored = timeline.begin ("loadExtModules")) {
+                loadExtModules ();
+            }
 
             // 如果指定的调试模块，则该模块应该是最后被加载，不会被其他模块所依赖
             if (debuggingModule != null) {
@@ -191,6 +206,7 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
         } finally {
             long now = System.currentTimeMillis ();
             logger.info ("Hothink Integration Framework started, it takes {} ms.", now - start);
+            writeTimeline ();
         }
 
         Runtime.getRuntime ().addShutdownHook (hook);
@@ -217,54 +233,27 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
         }
 
         if (!contexts.isEmpty ()) {
-            // 这里算法有点问题，依赖次数并不代表着依赖层次深！！！
-            // 排序，先停不被依赖的模块
-            Map<String, Wrapper> wrappers = contexts.values ().stream ().map (c -> {
-                ModuleInfo info = c.getInfo ();
-                if (info.internal) {
-                    return new Wrapper (info.name, Integer.MAX_VALUE);
-                } else if ("framework-manager".equals (info.name)) {
-                    return new Wrapper (info.name, Integer.MAX_VALUE >> 1);
-                } else {
-                    return new Wrapper (info.name, 0);
-                }
-            }).collect (Collectors.toMap (i -> i.name, i -> i));
-
-            // 分析每个模块的依赖情况
-            for (ModuleContextImpl context : contexts.values ()) {
-                ModuleInfo info = context.getInfo ();
-                if (!info.internal) {
-                    if (!info.dependencies.isEmpty ()) {
-                        info.dependencies.keySet ().forEach (name -> {
-                            Wrapper w = wrappers.get (name);
-                            if (w.count != Integer.MAX_VALUE) {
-                                w.count ++;
-                            }
-                        });
-                    }
-                }
-            }
-            List<Wrapper> orders = new ArrayList<> (wrappers.values ());
-            orders.sort (Comparator.comparingInt ((Wrapper a) -> a.count).thenComparing (a -> a.name));
-            if (logger.isTraceEnabled ()) {
-                logger.trace ("after sort: {}", orders);
-            }
-
-            for (Wrapper w : orders) {
-                try {
-                    ModuleContextImpl context = contexts.get (w.name);
-                    synchronized (this) {
-                        if (!listeners.isEmpty ()) {
-                            for (IModuleListener lsn : listeners) {
-                                lsn.onContextDestroy (context);
-                            }
+            // 沿依赖关系的反方向停止模块，互不依赖的模块并行停止
+            int parallelism = configuration.getInt (
+                    "integration.shutdown.parallelism", Runtime.getRuntime ().availableProcessors ()
+            );
+            long drain    = configuration.getLong ("integration.shutdown.drain.timeout", 5000L);
+            long deadline = configuration.getLong ("integration.shutdown.timeout", 30000L);
+            List<ModuleInfo> modules = contexts.values ().stream ().map (ModuleContextImpl::getInfo).collect (Collectors.toList ());
+            try {
+                new ModuleShutdownScheduler (parallelism, deadline).run (modules, info -> {
+                    ModuleContextImpl context = contexts.get (info.name);
+                    if (context != null) {
+                        // 先排空正在处理的请求，再停止模块
+                        if (!context.drain (drain)) {
+                            logger.warn ("module [{}] still has in-flight requests after {} ms, stop it anyway", info.name, drain);
                         }
+                        stop (info.name, false);
                     }
-
-                    stopModule (context.getName ());
-                } catch (Exception ex) {
-                    logger.warn (ex.getMessage (), ex);
-                }
+                });
+            } catch (InterruptedException ex) {
+                Thread.currentThread ().interrupt ();
+                logger.warn ("shutdown interrupted");
             }
 
             contexts.clear ();
@@ -357,6 +346,9 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
             context.setWorkdir (workdir);
             context.setClassLoader (loader);
             context.setInstance (module);
+            if (startupCache != null && !debug) {
+                context.setCacheEntry (startupCache.find (moduleName));
+            }
             if (loader instanceof ModuleClassLoader) {
                 ((ModuleClassLoader) loader).setModuleContext (context);
             }
@@ -366,12 +358,16 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
             int timeout = configuration.getInt ("integration.startup.timeout", 30000);
 
             // 查找数据库配置，如果可能
-            configDatabase (context, moduleName, className, workdir == null, debug);
+            try (StartupTimeline.Span ignored = timeline.begin ("configDatabase", moduleName)) {
+                configDatabase (context, moduleName, className, workdir == null, debug);
+            }
             // 如果可能，自动配置 mqtt
-            configMqtt (context, moduleName);
+            try (StartupTimeline.Span ignored = timeline.begin ("configMqtt", moduleName)) {
+                configMqtt (context, moduleName);
+            }
             // 如果可能，自动装配 redis
 
-            ModuleStartupTask task = new ModuleStartupTask (module, context);
+            ModuleStartupTask task = new ModuleStartupTask (module, context, timeline);
             if (new StartupMonitor (executor, timeout).timing (task)) {
                 String mBeanName = module.getMBeanName ();
                 if (jmxEnabled && !StringUtil.isEmpty (mBeanName)) {
@@ -387,7 +383,9 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
                     if (service == null) {
                         logger.warn ("no httpd service present, ignore the web part of module {}", info.name);
                     } else {
-                        service.attach (context, workdir);
+                        try (StartupTimeline.Span ignored = timeline.begin ("httpd.attach", moduleName)) {
+                            service.attach (context, workdir);
+                        }
                     }
                 }
 
@@ -417,28 +415,59 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
         }
     }
 
-    private static void autoWare (ModuleContextImpl context, IModule module) throws IOException {
+    private static void autoWare (ModuleContextImpl context, IModule module, StartupTimeline timeline) throws IOException {
         Logger logger = LoggerFactory.getLogger (IntegrationFramework.class);
 
         Class<? extends IModule> type = module.getClass ();
         SimpleServiceRouter router = context.getServiceRouter ();
         ContextClassScanner scanner = new ContextClassScanner (context, router);
 
+        StartupCache.Entry entry = context.getCacheEntry ();
+        Set<String> packages = Collections.emptySet ();
         if (type.isAnnotationPresent (AModule.class)) {
             AModule am = type.getAnnotation (AModule.class);
-            Set<String> packages = new HashSet<> ();
-            fillPackageNames (type, am, context.getContextClassLoader (), packages);
+            packages = entry == null ? null : entry.getPackages ();
+            if (packages == null) {
+                packages = new HashSet<> ();
+                fillPackageNames (type, am, context.getContextClassLoader (), packages);
+                if (entry != null) {
+                    entry.setPackages (packages);
+                }
+            }
+        }
+        // restful 处理类所在的包可能不在 @AModule 中，也要记录其中的候选类
+        String[] apiPackages = context.getInfo () == null ? null : context.getInfo ().apiPackages;
+        boolean hasApi = apiPackages != null && apiPackages.length > 0;
+        if (entry != null) {
+            scanner.setCachedClasses (entry.getClasses ());
+            scanner.setCachedCandidates (entry.getCandidates ());
+        }
+        if (hasApi) {
+            scanner.setCandidatePackages (apiPackages);
+        }
 
-            if (!packages.isEmpty ()) {
-                try {
-                    router.setResolved (false);
-                    scanner.scan (packages.toArray (new String[0]));
-                } catch (Exception ex) {
-                    logger.warn (ex.getMessage (), ex);
-                    throw new RuntimeException (ex);
-                } finally {
-                    router.setResolved (true);
+        if (!packages.isEmpty () || hasApi) {
+            try (StartupTimeline.Span ignored = timeline.begin ("scan", context.getName ())) {
+                router.setResolved (false);
+                scanner.scan (packages.toArray (new String[0]));
+                // 保存扫描结果，供 httpd 等子系统使用
+                ScanResult result = scanner.getScanResult ();
+                context.setScanResult (result);
+                if (entry != null && entry.getClasses () == null) {
+                    Map<String, List<String>> names = new HashMap<> ();
+                    for (String name : result.getPackages ()) {
+                        names.put (name, result.getClasses (name).stream ().map (Class::getName).collect (Collectors.toList ()));
+                    }
+                    entry.setClasses (names);
+                }
+                if (entry != null && entry.getCandidates () == null) {
+                    entry.setCandidates (result.getCandidateNames ());
                 }
+            } catch (Exception ex) {
+                logger.warn (ex.getMessage (), ex);
+                throw new RuntimeException (ex);
+            } finally {
+                router.setResolved (true);
             }
         }
     }
@@ -470,7 +499,7 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
                                     extract (map);
 
                                     if (loadedModules == null) {
-                                        loadedModules = new HashMap<> ();
+                                        loadedModules = new ConcurrentHashMap<> ();
                                     }
                                     loadedModules.putAll (map);
 
@@ -517,6 +546,15 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
             throw new IntegrationException ("cannot dynamically stop debugging module [" + name + "].");
         }
 
+        stop (name, true);
+    }
+
+    /**
+     * 停止指定名称的模块
+     * @param name 模块名称
+     * @param gc   停止后是否建议 jvm 回收内存。动态停止模块时为了尽快卸载模块的类，关闭框架时则没有必要
+     */
+    private void stop (String name, boolean gc) {
         ModuleContextImpl context = contexts.get (name);
         if (context != null) {
             try {
@@ -550,11 +588,18 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
             } finally {
                 // 删除缓存
                 contexts.remove (name);
-                loadedModules.remove (name);
+                if (loadedModules != null) {
+                    loadedModules.remove (name);
+                }
 
-                allModules.get (name).running = false;
+                ModuleInfo info = allModules.get (name);
+                if (info != null) {
+                    info.running = false;
+                }
                 broadcaster.broadcast (IModule.ACTION_CONTEXT_EVENT, IModule.CODE_CONTEXT_STOPPED, name);
-                System.gc();
+                if (gc) {
+                    System.gc ();
+                }
                 logger.info ("module [{}] stopped", name);
             }
         }
@@ -715,6 +760,11 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
         return new HashSet<> (router.getServiceNames ());
     }
 
+    @Override
+    public String getStartupTimeline () {
+        return timeline.toJson ();
+    }
+
     @Override
     @Deprecated
     public Object findService (String name) {
@@ -908,6 +958,23 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
         serviceClassLoader = new ServiceClassLoader (urls.toArray(new URL[0]));
     }
 
+    /**
+     * 将启动时间线写入 {@code framework.tmp.dir} 下的 {@code startup-timeline.json} 文件
+     */
+    private void writeTimeline () {
+        if (!StringUtil.isEmpty (temp_dir)) {
+            try {
+                Path path = Paths.get (temp_dir, "startup-timeline.json");
+                timeline.write (path);
+                if (logger.isTraceEnabled ()) {
+                    logger.trace ("the startup timeline has been wrote in file: {}", path.toRealPath ());
+                }
+            } catch (IOException ex) {
+                logger.warn ("cannot write startup timeline: {}", ex.getMessage ());
+            }
+        }
+    }
+
     /**
      * 为框架启动准备环境
      * @throws IOException io exception
@@ -920,6 +987,11 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
         }
         System.setProperty ("java.io.tmpdir", tmp.toRealPath ().toString ());
 
+        // 跨模块服务代理的实现方式 @since 1.1.0
+        ServiceProxyFactory.setStrategy (
+                configuration.getString ("integration.service.proxy", ServiceProxyFactory.DYNAMIC)
+        );
+
         // 检查是否启动 JMX
         jmxEnabled = configuration.getBoolean ("integration.jmx.enabled", false);
         if (logger.isTraceEnabled ()) {
@@ -1119,13 +1191,29 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
                 logger.trace ("loaders = {}", loaders);
             }
             if (!loaders.isEmpty ()) {
-                loadedModules = new HashMap<> (loaders.size ());
+                // 模块并行启动时，启动失败的模块会在各自的线程中被清理
+                loadedModules = new ConcurrentHashMap<> (loaders.size ());
+                if (!StringUtil.isEmpty (temp_dir) && configuration.getBoolean ("integration.startup.cache.enabled", true)) {
+                    startupCache = new StartupCache (Paths.get (temp_dir, "startup-cache"));
+                }
                 try {
-                    for (ModuleClassLoader loader : loaders.values ()) {
+                    for (Map.Entry<String, ModuleClassLoader> e : loaders.entrySet ()) {
+                        ModuleClassLoader loader = e.getValue ();
                         if (logger.isTraceEnabled ()) {
                             logger.trace ("mapping module: {} ...", loader);
                         }
-                        loadedModules.putAll (mapModules (loader, false));
+                        // jar 文件没有变化时直接使用缓存的模块信息
+                        StartupCache.Entry entry = startupCache == null ? null : startupCache.get (e.getKey (), loader.getURLs ());
+                        ModuleInfo cached = entry == null ? null : entry.getModuleInfo ();
+                        if (cached != null) {
+                            loadedModules.put (cached.name, cached);
+                        } else {
+                            Map<String, ModuleInfo> mapped = mapModules (loader, false);
+                            if (entry != null && mapped.size () == 1) {
+                                entry.setModuleInfo (mapped.values ().iterator ().next ());
+                            }
+                            loadedModules.putAll (mapped);
+                        }
                         if (logger.isTraceEnabled ()) {
                             logger.trace ("module: {} mapped.", loader);
                         }
@@ -1137,24 +1225,29 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
                     if (!loadedModules.isEmpty ()) {
                         extract (loadedModules);
 
-                        List<ModuleInfo> orderedModules = Helper.order (loadedModules);
+                        List<ModuleInfo> orderedModules = startupCache != null ?
+                                startupCache.order (loadedModules, Helper::order) : Helper.order (loadedModules);
                         if (!orderedModules.isEmpty ()) {
                             if (logger.isTraceEnabled ()) {
                                 logger.trace ("ordered modules: {}", orderedModules);
                             }
 
-                            for (ModuleInfo info : orderedModules) {
-                                if (!loaders.containsKey (info.name)) {
-                                    logger.warn ("classloader for module [{}] not found. ignore this module!", info.name);
-                                } else {
-                                    try {
+                            // 所有依赖都已启动的模块将被并行启动
+                            int parallelism = configuration.getInt (
+                                    "integration.startup.parallelism", Runtime.getRuntime ().availableProcessors ()
+                            );
+                            try {
+                                new ModuleStartupScheduler (parallelism).run (orderedModules, info -> {
+                                    if (!loaders.containsKey (info.name)) {
+                                        logger.warn ("classloader for module [{}] not found. ignore this module!", info.name);
+                                    } else {
                                         startModule (info, loaders.get (info.name), dirs.get (info.name), false);
                                         allModules.put (info.name, info);
-                                    } catch (IntegrationException error) {
-                                        logger.error ("cannot start module [{}], because of: ", info.name);
-                                        logger.error (error.getMessage (), error);
                                     }
-                                }
+                                });
+                            } catch (InterruptedException ex) {
+                                Thread.currentThread ().interrupt ();
+                                throw new IntegrationException (ex);
                             }
                             if (logger.isTraceEnabled ()) {
                                 logger.trace ("the loaded modules are: ");
@@ -1165,6 +1258,11 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
                     }
                 } finally {
                     loaders.clear ();
+                    if (startupCache != null) {
+                        // 之后动态启动的模块不使用缓存
+                        startupCache.save ();
+                        startupCache = null;
+                    }
                 }
             }
         }
@@ -1361,20 +1459,24 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
     private static final class ModuleStartupTask implements StartupMonitor.ITask {
         IModule module;
         IModuleContext context;
+        StartupTimeline timeline;
 
         final Logger logger = LoggerFactory.getLogger (ModuleStartupTask.class);
 
-        private ModuleStartupTask (IModule module, IModuleContext context) {
-            this.module  = module;
-            this.context = context;
+        private ModuleStartupTask (IModule module, IModuleContext context, StartupTimeline timeline) {
+            this.module   = module;
+            this.context  = context;
+            this.timeline = timeline;
         }
 
         @Override
         public void start () {
             if (module != null) try {
                 // 自动装配依赖注入
-                autoWare ((ModuleContextImpl) context, module);
-                module.startup (context);
+                autoWare ((ModuleContextImpl) context, module, timeline);
+                try (StartupTimeline.Span ignored = timeline.begin ("startup", context.getName ())) {
+                    module.startup (context);
+                }
             } catch (Exception ex) {
                 logger.warn (ex.getMessage (), ex);
 //                throw new RuntimeException (ex);
@@ -1391,19 +1493,4 @@ public class IntegrationFramework implements IntegrationFrameworkMBean, IMBeanDe
             }
         }
     }
-
-    private static final class Wrapper {
-        String name;
-        int count;
-
-        Wrapper (String name, int count) {
-            this.name  = name;
-            this.count = count;
-        }
-
-        @Override
-        public String toString () {
-            return "{" + name + ":" + count + "}";
-        }
-    }
 }
\ No newline at end of file
@@ -3,4 +3,11 @@ package org.dreamwork.integration.context;
 import org.dreamwork.integration.services.IFrameworkService;
 
 public interface IntegrationFrameworkMBean extends IFrameworkService {
+    /**
+     * 获取框架的启动时间线.
+     * <p>json 格式，包含框架启动过程中每个阶段的名称、所属模块、线程、开始时间和耗时，时间单位为微秒</p>
+     * @return 启动时间线
+     * @since 1.1.0
+     */
+    String getStartupTimeline ();
 }
\ No newline at end of file
@@ -10,62 +10,158 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 /**
  * Created by seth.yang on 2020/4/17
  */
 public class ModuleClassLoader extends URLClassLoader implements IModuleClassLoader {
+    static {
+        // 各模块并行启动时不必在同一把锁上串行加载类 @since 1.1.0
+        registerAsParallelCapable ();
+    }
+
     private final Logger logger = LoggerFactory.getLogger (ModuleClassLoader.class);
     private final String name;
     private final String uuid = StringUtil.uuid ();
 
     private IModuleContext module;
 
+    /** 条目名称 -> 所在的 jar，在第一次查找资源时建立 @since 1.1.0 */
+    private volatile Map<String, IndexedJar> index;
+    /** classpath 中是否有无法建立索引的位置（比如目录） */
+    private boolean partial;
+    private final AtomicLong hits = new AtomicLong (), misses = new AtomicLong ();
+
     public ModuleClassLoader (String name, URL[] urls, ClassLoader parent) {
         super (urls, parent);
         this.name = name;
     }
 
     public ModuleInfo getModuleInfo () throws IOException {
-        URL[] urls = this.getURLs ();
-        if (urls != null) {
-            for (URL url : urls) {
-                String path = url.getFile ();
-                if (path.endsWith (".jar")) {
-                    ModuleInfo info = Helper.findModuleInfo (new File (path));
-                    if (info != null) {
-                        return info;
-                    }
-                }
-            }
+        try (InputStream in = openIndexed ("META-INF/module.properties")) {
+            return in == null ? null : Helper.findModuleInfo (in, false);
         }
-        return null;
     }
 
     @Override
     public URL getResource (String name) {
-        URL[] urls = this.getURLs ();
-        if (urls != null) {
-            for (URL url : urls) {
-                String path = url.getFile ();
-                if (path.endsWith (".jar")) {
-                    try (JarFile jar = new JarFile (new File (path))) {
-                        if (jar.getEntry (name) != null) {
-                            return new URL ("jar:file:" + path + "!/" + name);
+        IndexedJar jar = lookup (name);
+        if (jar != null) {
+            try {
+                return new URL (jar.base + name);
+            } catch (MalformedURLException ex) {
+                logger.warn (ex.getMessage (), ex);
+            }
+        }
+
+        // 模块自己的 jar 中没有，交给父加载器
+        if (!partial && getParent () != null) {
+            return getParent ().getResource (name);
+        }
+        return super.getResource (name);
+    }
+
+    @Override
+    public InputStream getResourceAsStream (String name) {
+        try {
+            InputStream in = openIndexed (name);
+            if (in != null) {
+                return in;
+            }
+        } catch (IOException ex) {
+            logger.warn (ex.getMessage (), ex);
+        }
+        if (!partial && getParent () != null) {
+            return getParent ().getResourceAsStream (name);
+        }
+        return super.getResourceAsStream (name);
+    }
+
+    /**
+     * 资源索引的命中次数
+     * @return 在模块自己的 jar 中找到资源的次数
+     * @since 1.1.0
+     */
+    public long getResourceHits () {
+        return hits.get ();
+    }
+
+    /**
+     * 资源索引的未命中次数
+     * @return 在模块自己的 jar 中没有找到资源的次数
+     * @since 1.1.0
+     */
+    public long getResourceMisses () {
+        return misses.get ();
+    }
+
+    private InputStream openIndexed (String name) throws IOException {
+        IndexedJar jar = lookup (name);
+        if (jar == null) {
+            return null;
+        }
+        JarEntry entry = jar.file.getJarEntry (name);
+        return entry == null ? null : jar.file.getInputStream (entry);
+    }
+
+    private IndexedJar lookup (String name) {
+        Map<String, IndexedJar> map = getIndex ();
+        IndexedJar jar = map.get (name);
+        if (jar == null && !name.endsWith ("/")) {
+            // 目录条目
+            jar = map.get (name + '/');
+        }
+        if (jar != null) {
+            hits.incrementAndGet ();
+        } else {
+            misses.incrementAndGet ();
+        }
+        return jar;
+    }
+
+    /**
+     * 一次性打开所有的 jar 文件，建立条目名称到 jar 的索引。
+     * jar 文件在类加载器的整个生命周期内保持打开，在 {@link #destroy()} 时关闭
+     */
+    private Map<String, IndexedJar> getIndex () {
+        Map<String, IndexedJar> map = index;
+        if (map == null) {
+            synchronized (this) {
+                if ((map = index) == null) {
+                    map = new HashMap<> ();
+                    for (URL url : getURLs ()) {
+                        String path = url.getFile ();
+                        if (!"file".equals (url.getProtocol ()) || !path.endsWith (".jar")) {
+                            partial = true;
+                            continue;
+                        }
+                        try {
+                            IndexedJar jar = new IndexedJar (new JarFile (new File (path)), "jar:file:" + path + "!/");
+                            for (Enumeration<JarEntry> e = jar.file.entries (); e.hasMoreElements (); ) {
+                                // 和 classpath 的顺序一致，先出现的优先
+                                map.putIfAbsent (e.nextElement ().getName (), jar);
+                            }
+                        } catch (IOException ex) {
+                            logger.warn ("cannot open {}: {}", path, ex.getMessage ());
+                            partial = true;
                         }
-                    } catch (Exception ex) {
-                        //
                     }
+                    if (logger.isTraceEnabled ()) {
+                        logger.trace ("[{}] {} entries indexed", name, map.size ());
+                    }
+                    index = map;
                 }
             }
         }
-
-
-        return super.getResource (name);
+        return map;
     }
 
     @Override
@@ -99,6 +195,19 @@ public class ModuleClassLoader extends URLClassLoader implements IModuleClassLoa
             logger.trace ("[{}] destroying module class loader...", name);
         }
         module = null;
+        synchronized (this) {
+            if (index != null) {
+                if (logger.isTraceEnabled ()) {
+                    logger.trace ("[{}] resource index hits: {}, misses: {}", name, hits.get (), misses.get ());
+                }
+                for (IndexedJar jar : new HashSet<> (index.values ())) {
+                    try {
+                        jar.file.close ();
+                    } catch (IOException ignored) {}
+                }
+                index = Collections.emptyMap ();
+            }
+        }
         try {
             super.close ();
         } catch (IOException ignored) {}
@@ -130,4 +239,15 @@ public class ModuleClassLoader extends URLClassLoader implements IModuleClassLoa
     public IModuleContext getModuleContext () {
         return module;
     }
+
+    private static final class IndexedJar {
+        final JarFile file;
+        /** 资源 url 的前缀 */
+        final String base;
+
+        IndexedJar (JarFile file, String base) {
+            this.file = file;
+            this.base = base;
+        }
+    }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import org.dreamwork.integration.api.services.IDatabaseService;
 import org.dreamwork.integration.api.services.IHttpdService;
 import org.dreamwork.integration.api.services.IMqttService;
 import org.dreamwork.integration.proxy.ServiceProxyFactory;
+import org.dreamwork.integration.util.Injectors;
 import org.dreamwork.config.IConfiguration;
 import org.dreamwork.config.PropertyConfiguration;
 import org.slf4j.Logger;
@@ -27,6 +28,10 @@ public class ModuleContextImpl implements IModuleContext {
     private ClassLoader classLoader;
     private String name;
     private Path workdir;   // ../work/${moduleName}
+    /** @since 1.1.0 */
+    private volatile ScanResult scanResult;
+    /** 启动缓存，只在框架启动时加载的模块才有 @since 1.1.0 */
+    private StartupCache.Entry cacheEntry;
 
     private final Set<String> dbConfigs   = new HashSet<> ();
     private final Set<String> mqttConfigs = new HashSet<> ();
@@ -82,6 +87,23 @@ public class ModuleContextImpl implements IModuleContext {
         this.info = info;
     }
 
+    @Override
+    public ScanResult getScanResult () {
+        return scanResult;
+    }
+
+    void setScanResult (ScanResult scanResult) {
+        this.scanResult = scanResult;
+    }
+
+    StartupCache.Entry getCacheEntry () {
+        return cacheEntry;
+    }
+
+    void setCacheEntry (StartupCache.Entry cacheEntry) {
+        this.cacheEntry = cacheEntry;
+    }
+
     @Override
     public String getName () {
         return name;
@@ -103,6 +125,9 @@ public class ModuleContextImpl implements IModuleContext {
     @Override
     @SuppressWarnings ("all")
     public <T> T findService (Class<T> type) {
+        if (serviceRouter == null) {
+            return null;
+        }
         Object o = serviceRouter.findService (type);
         if (o == null) {
             return null;
@@ -115,6 +140,22 @@ public class ModuleContextImpl implements IModuleContext {
         return ServiceProxyFactory.createProxy (classLoader, o, type);
     }
 
+    @Override
+    public <T> ServiceHandle<T> serviceHandle (Class<T> type) {
+        if (type == null) {
+            throw new NullPointerException ("type");
+        }
+        return new CachedServiceHandle<> (this, type, null);
+    }
+
+    @Override
+    public <T> ServiceHandle<T> serviceHandle (String name) {
+        if (name == null) {
+            throw new NullPointerException ("name");
+        }
+        return new CachedServiceHandle<> (this, null, name);
+    }
+
     @Override
     public void registerService (Class<?> type, Object object) {
         if (serviceRouter != null)
@@ -189,6 +230,37 @@ public class ModuleContextImpl implements IModuleContext {
         }
     }
 
+    /**
+     * 排空模块正在处理的外部请求。
+     * <p>调用后模块不再接受新的 web 请求和 mqtt 消息，并最多等待 {@code timeout} 毫秒，直到正在处理的请求和消息完成</p>
+     * @param timeout 最长等待时间，单位毫秒
+     * @return 所有请求都已完成返回 {@code true}，否则返回 {@code false}
+     * @since 1.1.0
+     */
+    boolean drain (long timeout) {
+        if (timeout <= 0) {
+            return true;
+        }
+
+        long deadline = System.currentTimeMillis () + timeout;
+        boolean drained = true;
+        if (info != null && info.requireHttpd) {
+            IHttpdService service = findService (IHttpdService.class);
+            if (service != null) {
+                drained = service.drain (info, timeout);
+            }
+        }
+        if (!mqttConfigs.isEmpty ()) {
+            IMqttService service = findService (IMqttService.class);
+            if (service != null) {
+                for (String name : mqttConfigs) {
+                    drained &= service.drain (name, Math.max (0, deadline - System.currentTimeMillis ()));
+                }
+            }
+        }
+        return drained;
+    }
+
     /**
      * 销毁模块容器实例
      */
@@ -207,7 +279,7 @@ public class ModuleContextImpl implements IModuleContext {
             for (ClassScanner.Wrapper w : wrappers) {
                 if (w.preDestroy != null) {
                     try {
-                        w.preDestroy.invoke (w.bean);
+                        Injectors.invoke (w.preDestroy, w.bean);
                     } catch (Exception ex) {
                         if (logger.isTraceEnabled ()) {
                             logger.warn (ex.getMessage (), ex);
@@ -258,8 +330,9 @@ public class ModuleContextImpl implements IModuleContext {
             ((ModuleClassLoader) classLoader).destroy ();
         }
 
-        workdir  = null;
-        instance = null;
+        workdir    = null;
+        instance   = null;
+        scanResult = null;
     }
 
     @Override
@@ -0,0 +1,215 @@
+package org.dreamwork.integration.context;
+
+import org.dreamwork.integration.api.ModuleInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模块停止调度器.
+ *
+ * <p>沿着依赖关系图的反方向停止模块：一个模块只有在所有依赖它的模块都停止之后才会被停止，
+ * 互不依赖的模块在一个有界的线程池中并行停止。</p>
+ * <p>除了 {@link ModuleInfo#dependencies} 声明的依赖之外，所有外部模块都隐含地依赖于 {@code framework-manager}
+ * 和内置模块，{@code framework-manager} 隐含地依赖于内置模块。</p>
+ * <p>每个模块的停止过程有一个硬性的截止时间，超时的模块将被放弃（中断其停止线程），以免拖住整个关闭过程。</p>
+ *
+ * @since 1.1.0
+ */
+class ModuleShutdownScheduler {
+    private static final String FRAMEWORK_MANAGER = "framework-manager";
+
+    private final Logger logger = LoggerFactory.getLogger (ModuleShutdownScheduler.class);
+    private final int parallelism;
+    private final long deadline;
+
+    /**
+     * @param parallelism 最大并行度
+     * @param deadline    每个模块停止过程的截止时间，单位毫秒
+     */
+    ModuleShutdownScheduler (int parallelism, long deadline) {
+        this.parallelism = Math.max (1, parallelism);
+        this.deadline    = Math.max (1, deadline);
+    }
+
+    /**
+     * 停止所有模块，直到所有模块都已停止或被放弃才返回
+     * @param modules 所有正在运行的模块
+     * @param stopper 模块的停止过程
+     * @return 每个模块的停止耗时，单位毫秒。被放弃的模块记为 -1
+     * @throws InterruptedException 等待过程中被中断
+     */
+    Map<String, Long> run (Collection<ModuleInfo> modules, IModuleStopper stopper) throws InterruptedException {
+        Map<String, Long> latencies = new LinkedHashMap<> ();
+        if (modules.isEmpty ()) {
+            return latencies;
+        }
+
+        Map<String, Node> nodes = new TreeMap<> ();
+        for (ModuleInfo info : modules) {
+            nodes.put (info.name, new Node (info));
+        }
+        Node manager = nodes.get (FRAMEWORK_MANAGER);
+        for (Node node : nodes.values ()) {
+            if (node.info.internal) {
+                continue;
+            }
+            Set<Node> dependencies = new LinkedHashSet<> ();
+            for (String name : node.info.dependencies.keySet ()) {
+                Node dep = nodes.get (name);
+                if (dep != null) {
+                    dependencies.add (dep);
+                }
+            }
+            if (manager != null && node != manager) {
+                dependencies.add (manager);
+            }
+            for (Node n : nodes.values ()) {
+                if (n.info.internal) {
+                    dependencies.add (n);
+                }
+            }
+            dependencies.remove (node);
+            // 反向：依赖者停止之后，被依赖者才能停止
+            for (Node dep : dependencies) {
+                dep.dependents ++;
+                node.dependencies.add (dep);
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool (Math.min (parallelism, nodes.size ()), new ThreadFactory () {
+            private final AtomicInteger counter = new AtomicInteger ();
+
+            @Override
+            public Thread newThread (Runnable r) {
+                Thread t = new Thread (r, "module-stopper-" + counter.incrementAndGet ());
+                t.setDaemon (true);
+                return t;
+            }
+        });
+        CompletionService<Node> service = new ExecutorCompletionService<> (pool);
+        Map<Future<Node>, Node> running = new HashMap<> ();
+        Set<Node> done = new HashSet<> ();
+        long base = System.nanoTime ();
+        try {
+            for (Node node : nodes.values ()) {
+                if (node.dependents == 0) {
+                    running.put (submit (service, node, stopper), node);
+                }
+            }
+
+            while (!running.isEmpty () || done.size () < nodes.size ()) {
+                if (running.isEmpty ()) {
+                    // 存在循环依赖，按名称顺序挑一个未停止的模块继续
+                    for (Node node : nodes.values ()) {
+                        if (!done.contains (node)) {
+                            logger.warn ("module [{}] has circular dependencies, stop it anyway", node.info.name);
+                            node.dependents = 0;
+                            running.put (submit (service, node, stopper), node);
+                            break;
+                        }
+                    }
+                }
+
+                Future<Node> future = service.poll (nextTimeout (running.values ()), TimeUnit.NANOSECONDS);
+                List<Node> finished = new ArrayList<> ();
+                if (future != null) {
+                    Node node = running.remove (future);
+                    if (node != null) {
+                        finished.add (node);
+                    }
+                } else {
+                    // 检查是否有模块超过了截止时间
+                    long now = System.nanoTime ();
+                    Iterator<Map.Entry<Future<Node>, Node>> it = running.entrySet ().iterator ();
+                    while (it.hasNext ()) {
+                        Map.Entry<Future<Node>, Node> e = it.next ();
+                        Node node = e.getValue ();
+                        if (node.started && now - node.start >= TimeUnit.MILLISECONDS.toNanos (deadline)) {
+                            logger.warn ("module [{}] did not stop within {} ms, abandon it", node.info.name, deadline);
+                            e.getKey ().cancel (true);
+                            node.abandoned = true;
+                            it.remove ();
+                            finished.add (node);
+                        }
+                    }
+                }
+
+                for (Node node : finished) {
+                    done.add (node);
+                    latencies.put (node.info.name, node.abandoned ? -1L : (node.end - node.start) / 1_000_000);
+                    for (Node dep : node.dependencies) {
+                        if (!done.contains (dep) && -- dep.dependents == 0) {
+                            running.put (submit (service, dep, stopper), dep);
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow ();
+        }
+
+        if (logger.isInfoEnabled ()) {
+            logger.info ("{} modules stopped in {} ms with parallelism {}, stop latencies (ms): {}",
+                    nodes.size (), (System.nanoTime () - base) / 1_000_000, parallelism, latencies);
+        }
+        return latencies;
+    }
+
+    private Future<Node> submit (CompletionService<Node> service, Node node, IModuleStopper stopper) {
+        return service.submit (() -> {
+            node.start = System.nanoTime ();
+            node.started = true;
+            try {
+                stopper.stop (node.info);
+            } catch (Throwable ex) {
+                logger.warn ("an error occurred while stopping module [{}]: {}", node.info.name, ex.getMessage ());
+                logger.warn (ex.getMessage (), ex);
+            } finally {
+                node.end = System.nanoTime ();
+            }
+            return node;
+        });
+    }
+
+    /**
+     * 计算下一次检查截止时间前需要等待的纳秒数
+     */
+    private long nextTimeout (Collection<Node> running) {
+        long limit = TimeUnit.MILLISECONDS.toNanos (deadline), now = System.nanoTime (), timeout = limit;
+        for (Node node : running) {
+            if (node.started) {
+                timeout = Math.min (timeout, node.start + limit - now);
+            } else {
+                // 还在线程池队列里，稍后再检查
+                timeout = Math.min (timeout, TimeUnit.MILLISECONDS.toNanos (100));
+            }
+        }
+        return Math.max (timeout, 0);
+    }
+
+    /**
+     * 模块的停止过程
+     */
+    interface IModuleStopper {
+        void stop (ModuleInfo info) throws Exception;
+    }
+
+    private static final class Node {
+        final ModuleInfo info;
+        /** 本模块停止后才能停止的模块 */
+        final List<Node> dependencies = new ArrayList<> ();
+        /** 尚未停止的依赖者数量，只在调度线程中访问 */
+        int dependents;
+        volatile long start, end;
+        volatile boolean started;
+        boolean abandoned;
+
+        Node (ModuleInfo info) {
+            this.info = info;
+        }
+    }
+}
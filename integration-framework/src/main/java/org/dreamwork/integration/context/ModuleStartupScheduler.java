@@ -0,0 +1,188 @@
+package org.dreamwork.integration.context;
+
+import org.dreamwork.integration.api.ModuleInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 模块启动调度器.
+ *
+ * <p>根据 {@link ModuleInfo#dependencies} 构建依赖关系图，所有依赖都已启动的模块将在一个有界的线程池中并行启动。
+ * 每个模块的启动超时仍由 {@link StartupMonitor} 控制。</p>
+ * <p>所有模块启动完成后，调度器将报告本次启动的 <i>关键路径</i>，即决定总启动时长的那条依赖链</p>
+ *
+ * @since 1.1.0
+ */
+class ModuleStartupScheduler {
+    private final Logger logger = LoggerFactory.getLogger (ModuleStartupScheduler.class);
+    private final int parallelism;
+
+    ModuleStartupScheduler (int parallelism) {
+        this.parallelism = Math.max (1, parallelism);
+    }
+
+    /**
+     * 启动所有模块，直到所有模块都已处理完毕才返回
+     * @param ordered 经过 {@link org.dreamwork.integration.util.Helper#order(Map)} 排序的模块列表
+     * @param starter 模块的启动过程
+     * @throws InterruptedException 等待过程中被中断
+     */
+    void run (List<ModuleInfo> ordered, IModuleStarter starter) throws InterruptedException {
+        if (ordered.isEmpty ()) {
+            return;
+        }
+
+        // 构建依赖图。只考虑本批次内的依赖，本批次之外的依赖（内置模块，已运行的模块）视为已满足
+        Map<String, Node> nodes = new LinkedHashMap<> ();
+        for (ModuleInfo info : ordered) {
+            nodes.put (info.name, new Node (info));
+        }
+        for (Node node : nodes.values ()) {
+            for (String name : node.info.dependencies.keySet ()) {
+                Node dep = nodes.get (name);
+                if (dep != null) {
+                    node.dependencies.add (dep);
+                    dep.dependents.add (node);
+                }
+            }
+            node.remaining.set (node.dependencies.size ());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool (Math.min (parallelism, nodes.size ()), new ThreadFactory () {
+            private final AtomicInteger counter = new AtomicInteger ();
+
+            @Override
+            public Thread newThread (Runnable r) {
+                Thread t = new Thread (r, "module-starter-" + counter.incrementAndGet ());
+                t.setDaemon (true);
+                return t;
+            }
+        });
+        CompletionService<Node> service = new ExecutorCompletionService<> (pool);
+        long base = System.nanoTime ();
+        int pending = 0;
+        try {
+            for (Node node : nodes.values ()) {
+                if (node.remaining.get () == 0) {
+                    submit (service, node, starter, base);
+                    pending ++;
+                }
+            }
+
+            Set<Node> done = new HashSet<> ();
+            while (pending > 0) {
+                Node node = take (service);
+                pending --;
+                done.add (node);
+
+                for (Node dependent : node.dependents) {
+                    if (dependent.remaining.decrementAndGet () == 0) {
+                        submit (service, dependent, starter, base);
+                        pending ++;
+                    }
+                }
+            }
+
+            if (done.size () < nodes.size ()) {
+                // 存在循环依赖，剩下的模块按原来的顺序串行启动
+                for (Node node : nodes.values ()) {
+                    if (!done.contains (node)) {
+                        logger.warn ("module [{}] has circular dependencies, start it serially", node.info.name);
+                        submit (service, node, starter, base);
+                        take (service);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown ();
+        }
+
+        report (nodes.values ());
+    }
+
+    private void submit (CompletionService<Node> service, Node node, IModuleStarter starter, long base) {
+        service.submit (() -> {
+            node.start = System.nanoTime () - base;
+            try {
+                starter.start (node.info);
+            } catch (Throwable ex) {
+                logger.error ("cannot start module [{}], because of: ", node.info.name);
+                logger.error (ex.getMessage (), ex);
+            } finally {
+                node.end = System.nanoTime () - base;
+            }
+            return node;
+        });
+    }
+
+    private Node take (CompletionService<Node> service) throws InterruptedException {
+        try {
+            return service.take ().get ();
+        } catch (ExecutionException ex) {
+            // 任务内部已捕获所有异常，不会到这里
+            throw new IllegalStateException (ex.getCause ());
+        }
+    }
+
+    /**
+     * 计算并报告关键路径
+     * @param nodes 所有节点
+     */
+    private void report (Collection<Node> nodes) {
+        Node tail = null;
+        for (Node node : nodes) {
+            if (tail == null || node.end > tail.end) {
+                tail = node;
+            }
+        }
+        if (tail == null) {
+            return;
+        }
+
+        // 从最后结束的模块往回找，每一步都选择最后结束的那个依赖
+        LinkedList<Node> path = new LinkedList<> ();
+        for (Node node = tail; node != null; ) {
+            path.addFirst (node);
+            Node latest = null;
+            for (Node dep : node.dependencies) {
+                if (latest == null || dep.end > latest.end) {
+                    latest = dep;
+                }
+            }
+            node = latest;
+        }
+
+        StringBuilder builder = new StringBuilder ();
+        for (Node node : path) {
+            if (builder.length () > 0) {
+                builder.append (" -> ");
+            }
+            builder.append (node.info.name).append ('(').append ((node.end - node.start) / 1_000_000).append (" ms)");
+        }
+        logger.info ("{} modules started in {} ms with parallelism {}, critical path: {}",
+                nodes.size (), tail.end / 1_000_000, parallelism, builder);
+    }
+
+    /**
+     * 模块的启动过程
+     */
+    interface IModuleStarter {
+        void start (ModuleInfo info) throws Exception;
+    }
+
+    private static final class Node {
+        final ModuleInfo info;
+        final List<Node> dependencies = new ArrayList<> ();
+        final List<Node> dependents   = new ArrayList<> ();
+        final AtomicInteger remaining = new AtomicInteger ();
+        volatile long start, end;
+
+        Node (ModuleInfo info) {
+            this.info = info;
+        }
+    }
+}
@@ -3,40 +3,88 @@ package org.dreamwork.integration.context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 /**
  * Created by seth.yang on 2020/4/20
  */
 public class ServiceClassLoader extends URLClassLoader {
+    /** 未命中缓存的最大条目数 @since 1.1.0 */
+    private static final int MAX_MISSES = 4096;
+
+    static {
+        registerAsParallelCapable ();
+    }
+
     private final Logger logger = LoggerFactory.getLogger (ServiceClassLoader.class);
     private List<ShadowClassLoader> shadows =new ArrayList<>();
 
+    /** 包名 -> 包含这个包的 shadow loader，按 url 的顺序排列 @since 1.1.0 */
+    private final Map<String, List<ShadowClassLoader>> packages = new HashMap<> ();
+    /** 无法建立索引的 shadow loader（比如目录），每次都需要尝试 @since 1.1.0 */
+    private final List<ShadowClassLoader> unindexed = new ArrayList<> ();
+    /** 最近未能加载的类名 @since 1.1.0 */
+    private final Map<String, Boolean> misses = Collections.synchronizedMap (
+        new LinkedHashMap<String, Boolean> (64, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry (Map.Entry<String, Boolean> eldest) {
+                return size () > MAX_MISSES;
+            }
+        }
+    );
+
     public ServiceClassLoader (URL[] urls) {
         super (urls, Thread.currentThread ().getContextClassLoader ());
         for (URL url : urls) {
             ShadowClassLoader shadow = new ShadowClassLoader (url, this);
             shadows.add(shadow);
+            index (url, shadow);
         }
     }
 
     @Override
     public Class<?> loadClass (String name) throws ClassNotFoundException {
-        for (ShadowClassLoader loader : shadows) {
-            try {
-                return loader.loadClass (name);
-            } catch (Exception ex) {
-                // ignore, call next class loader
-/*
-               if(logger.isTraceEnabled()){
-                   logger.trace(ex.getMessage(),ex);
-               }
-*/
+        if (misses.containsKey (name)) {
+            throw new ClassNotFoundException (name);
+        }
+
+        int pos = name.lastIndexOf ('.');
+        List<ShadowClassLoader> candidates = packages.get (pos < 0 ? "" : name.substring (0, pos));
+        if (candidates == null && unindexed.isEmpty ()) {
+            // 没有任何 jar 包含这个包，只可能由上级加载器提供
+            ClassLoader parent = getParent ();
+            if (parent != null) {
+                try {
+                    return parent.loadClass (name);
+                } catch (ClassNotFoundException ex) {
+                    // ignore
+                }
+            }
+        } else {
+            if (candidates != null) {
+                for (ShadowClassLoader loader : candidates) {
+                    try {
+                        return loader.loadClass (name);
+                    } catch (Exception ex) {
+                        // ignore, call next class loader
+                    }
+                }
+            }
+            for (ShadowClassLoader loader : unindexed) {
+                try {
+                    return loader.loadClass (name);
+                } catch (Exception ex) {
+                    // ignore, call next class loader
+                }
             }
         }
+        misses.put (name, Boolean.TRUE);
         super.clearAssertionStatus ();
         throw new ClassNotFoundException (name);
     }
@@ -52,7 +100,38 @@ public class ServiceClassLoader extends URLClassLoader {
         shadow = new ShadowClassLoader (getURLs (), this);*/
     }
 
+    /**
+     * 扫描 jar 文件中的条目，记录其中包含的包
+     * @param url    jar 文件的 url
+     * @param shadow 对应的 shadow loader
+     */
+    private void index (URL url, ShadowClassLoader shadow) {
+        if ("file".equals (url.getProtocol ()) && url.getPath ().endsWith (".jar")) {
+            try (JarFile jar = new JarFile (new File (url.toURI ()))) {
+                Set<String> names = new HashSet<> ();
+                for (Enumeration<JarEntry> e = jar.entries (); e.hasMoreElements (); ) {
+                    String entry = e.nextElement ().getName ();
+                    if (entry.endsWith (".class")) {
+                        int pos = entry.lastIndexOf ('/');
+                        names.add (pos < 0 ? "" : entry.substring (0, pos).replace ('/', '.'));
+                    }
+                }
+                for (String name : names) {
+                    packages.computeIfAbsent (name, key -> new ArrayList<> (1)).add (shadow);
+                }
+                return;
+            } catch (Exception ex) {
+                logger.warn ("cannot index {}: {}", url, ex.getMessage ());
+            }
+        }
+        unindexed.add (shadow);
+    }
+
     private static final class ShadowClassLoader extends URLClassLoader {
+        static {
+            registerAsParallelCapable ();
+        }
+
         private final Logger logger = LoggerFactory.getLogger (ShadowClassLoader.class);
         public ShadowClassLoader (URL url, ClassLoader parent) {
             super (new URL[]{url}, parent);
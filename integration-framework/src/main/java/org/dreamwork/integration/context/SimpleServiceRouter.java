@@ -2,21 +2,18 @@ package org.dreamwork.integration.context;
 
 import org.dreamwork.integration.api.IModuleClassLoader;
 import org.dreamwork.integration.api.IModuleContext;
-import org.dreamwork.integration.api.annotation.AConfigured;
+import org.dreamwork.integration.util.Injectors;
 import org.dreamwork.config.IConfiguration;
 import org.dreamwork.util.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.management.InstanceNotFoundException;
 import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -24,33 +21,49 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import static org.dreamwork.integration.util.Helper.configureFields;
 
 public class SimpleServiceRouter implements IServiceRouter {
-    /**
-     * 排除的包名。
-     *
-     * <p>某些 jdk 自带的接口不适合作为类型索引，应该排除它们</p>
-     */
-    private static final String[] EXCLUDE_PREFIXES = {
-            "java.util.", "java.io."
-    };
-
     private final Logger logger = LoggerFactory.getLogger (SimpleServiceRouter.class);
 
+    /**
+     * 以下两个映射仅在持有本对象的锁时才能修改，修改后必须调用 {@link #publish()} 发布新的快照
+     */
     protected final Map<String, Object> mappedByName = new HashMap<> ();
-    protected final Map<Class<?>, Object> mappedByType = Collections.synchronizedMap (new HashMap<> ());
+    protected final Map<Class<?>, Object> mappedByType = new HashMap<> ();
     protected final Map<String, ContextCache> caches = new ConcurrentHashMap<> ();
 
     private final AtomicBoolean resolved = new AtomicBoolean (false);
+    /**
+     * 当前线程是否正在扫描托管对象。
+     *
+     * <p>多个模块可能并行启动，一个模块扫描完成不能影响其他仍在扫描的模块，所以扫描状态是线程私有的</p>
+     */
+    private final ThreadLocal<Boolean> scanning = new ThreadLocal<> ();
+
+    /**
+     * 只读快照。
+     *
+     * <p>所有的查询都只读取这个快照，不需要任何锁；
+     * 只有注册/反注册服务时才会在锁内重新构建快照，并通过 volatile 引用发布</p>
+     */
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * 当前线程是否推迟发布快照。
+     *
+     * <p>扫描器批量注册托管对象时，每注册一个对象都重建一次快照的代价是 O(n<sup>2</sup>) 的，
+     * 所以扫描期间推迟发布，等到需要依赖注入之前统一发布一次</p>
+     */
+    private final ThreadLocal<Boolean> deferred = new ThreadLocal<> ();
 
     @Override
     @SuppressWarnings ("unchecked")
-    synchronized public <T> T findService (String name) {
-        return (T) mappedByName.get (name);
+    public <T> T findService (String name) {
+        return (T) snapshot.names.get (name);
     }
 
     @SuppressWarnings ("unchecked")
     @Override
-    synchronized public <T> T findService (Class<T> type) {
-        Object o = mappedByType.get (type);
+    public <T> T findService (Class<T> type) {
+        Object o = snapshot.types.get (type);
         if (o instanceof InnerList) {
             InnerList il = (InnerList) o;
             if (il.size () == 1) {
@@ -95,19 +108,15 @@ public class SimpleServiceRouter implements IServiceRouter {
             cache.names.add (name);
 
             // 为了能够在客户代码中通过实例的任意级别的类 (java.lang.Object除外) 来索引实例
-            // 这里必须展开这个实例的继承树
-            Set<Class<?>> types = new HashSet<> ();
-            // 获取继承树上的各个类型
-            findAllType (bean.getClass (), types);
+            // 这里必须展开这个实例的继承树，展开的结果缓存在类型描述符中
+            TypeDescriptor descriptor = TypeDescriptor.of (bean.getClass ());
+            Class<?>[] types = descriptor.types;
 
             if (logger.isTraceEnabled ()) {
-                logger.trace ("found all types: {}", types);
+                logger.trace ("found all types: {}", Arrays.toString (types));
             }
 
-            if (!types.isEmpty ()) {
-                // 预处理方法
-                Method postConstruct = null;
-                Set<Field> set = new HashSet<> ();
+            if (types.length > 0) {
                 for (Class<?> type : types) {
                     if (!mappedByType.containsKey (type)) {
                         // 若这个类型的实例未被映射过，直接映射
@@ -132,54 +141,56 @@ public class SimpleServiceRouter implements IServiceRouter {
                             cache.add (type, bean);
                         }
                     }
+                }
+            }
+            // 先发布快照，后续的依赖注入需要能查到刚刚注册的实例
+            if (deferred.get () == null || isResolved ()) {
+                publish ();
+            }
 
-                    // 曾经已经解决了依赖注入，当对象被注入后，需要再次解决注入依赖
-                    if (resolved.get ()) {
-                        if (!type.isInterface ()) {
-                            try {
-                                Method method = resolve (context, bean, type);
-                                if (method != null) {
-                                    if (postConstruct != null) {
-                                        throw new RuntimeException ("Only ONE method can be annotated as PostConstruct.");
-                                    }
-                                    postConstruct = method;
-                                }
-                            } catch (Exception ex) {
-                                logger.warn (ex.getMessage (), ex);
-                                if (ex instanceof RuntimeException) {
-                                    throw (RuntimeException) ex;
-                                } else {
-                                    throw new RuntimeException (ex);
+            if (types.length > 0) {
+                // 预处理方法
+                Method postConstruct = null;
+                // 曾经已经解决了依赖注入，当对象被注入后，需要再次解决注入依赖
+                if (isResolved ()) {
+                    for (TypeDescriptor.ResolvePlan plan : descriptor.plans) {
+                        try {
+                            Method method = resolve (context, bean, plan);
+                            if (method != null) {
+                                if (postConstruct != null) {
+                                    throw new RuntimeException ("Only ONE method can be annotated as PostConstruct.");
                                 }
+                                postConstruct = method;
+                            }
+                        } catch (Exception ex) {
+                            logger.warn (ex.getMessage (), ex);
+                            if (ex instanceof RuntimeException) {
+                                throw (RuntimeException) ex;
+                            } else {
+                                throw new RuntimeException (ex);
                             }
-                        }
-                    }
-
-                    Field[] fields = type.getDeclaredFields ();
-                    for (Field field : fields) {
-                        if (field.isAnnotationPresent (AConfigured.class)) {
-                            // 标注为配置注入的字段
-                            set.add (field);
                         }
                     }
                 }
+                // 标注为配置注入的字段
+                Field[] configured = descriptor.configuredFields;
 
                 // 执行预处理方法
                 if (postConstruct != null) {
                     try {
-                        postConstruct.invoke (bean);
+                        Injectors.invoke (postConstruct, bean);
                     } catch (Exception ex) {
                         logger.warn (ex.getMessage (), ex);
                         throw new RuntimeException (ex);
                     }
                 }
 
-                if (!set.isEmpty ()) {
+                if (configured.length > 0) {
                     // 配置注入
                     IConfiguration conf = findService (IConfiguration.class);
                     if (conf != null) {
                         try {
-                            configureFields (conf, bean, set);
+                            configureFields (conf, bean, Arrays.asList (configured));
                         } catch (IllegalAccessException ex) {
                             logger.warn (ex.getMessage (), ex);
                             throw new RuntimeException (ex);
@@ -190,52 +201,49 @@ public class SimpleServiceRouter implements IServiceRouter {
         }
     }
 
-    private Method resolve (IModuleContext context, Object bean, Class<?> type) throws InvocationTargetException, IllegalAccessException, InstanceNotFoundException {
-        Method postConstruct = null;
+    private Method resolve (IModuleContext context, Object bean, TypeDescriptor.ResolvePlan plan) throws InvocationTargetException, IllegalAccessException, InstanceNotFoundException {
         // 注入需要注入的字段
-        Field[] fields = type.getDeclaredFields ();
-        for (Field field : fields) {
-            if (field.isAnnotationPresent (Resource.class)) {
-                injectField (context, bean, field);
-            }
+        for (Field field : plan.resourceFields) {
+            injectField (context, bean, field);
         }
         // 注入需要处理的方法
-        Method[] methods = type.getDeclaredMethods ();
-        for (Method method : methods) {
-            if (method.isAnnotationPresent (Resource.class)) {
-                int code = map (method);
-                switch (code) {
-                    case 1: // 标注为 Resource 的方法
-                        processResourceMethod (context, bean, method);
-                        break;
-                    case 2: // 标注为 PostConstruct 的方法
-                        postConstruct = method;
-                        break;
-                }
-            }
+        for (Method method : plan.resourceMethods) {
+            processResourceMethod (context, bean, method);
         }
 
-        return postConstruct;
+        return plan.postConstruct;
     }
 
     @Override
     synchronized public void unregisterService (Class<?> type, Object object) {
+        if (removeMapping (type, object)) {
+            publish ();
+        }
+    }
+
+    /**
+     * 从类型映射中移除实例，不发布快照. 调用者必须持有本对象的锁
+     * @return 类型曾经被映射过时返回 true
+     */
+    private boolean removeMapping (Class<?> type, Object object) {
         Object o = mappedByType.get (type);
-        if (o != null) {
-            if (o instanceof InnerList) {
-                InnerList il = (InnerList) o;
-                il.remove (object);
-                if (il.isEmpty ()) {
-                    mappedByType.remove (type);
-                }
-            } else {
+        if (o == null) {
+            return false;
+        }
+        if (o instanceof InnerList) {
+            InnerList il = (InnerList) o;
+            il.remove (object);
+            if (il.isEmpty ()) {
                 mappedByType.remove (type);
             }
+        } else {
+            mappedByType.remove (type);
         }
+        return true;
     }
 
     @Override
-    public void clean (IModuleContext context) {
+    synchronized public void clean (IModuleContext context) {
         if (logger.isTraceEnabled ()) {
             logger.trace ("trying to clean services what registered by context: {}", context.getName ());
         }
@@ -256,70 +264,66 @@ public class SimpleServiceRouter implements IServiceRouter {
                 }
                 cache.objects.forEach ((type, list) -> {
                     if (list != null && !list.isEmpty ()) {
-                        list.forEach (o -> unregisterService (type, o));
+                        // 直接修改映射，最后统一发布一次快照
+                        list.forEach (o -> removeMapping (type, o));
                     }
                 });
             }
+            publish ();
         }
     }
 
-    synchronized Set<String> getServiceNames () {
-        return mappedByName.keySet ();
+    Set<String> getServiceNames () {
+        return snapshot.names.keySet ();
     }
 
     /**
-     * 展开类的继承树，并将每个层级的类放在集合中
-     * @param baseType 基本类型
-     * @param types    出参。每个层级的类型都会被放在这个集合中
+     * 获取注册表的版本号。每次注册表发生变化，版本号都会增加
+     * @return 当前注册表的版本号
      */
-    private void findAllType (Class<?> baseType, Set<Class<?>> types) {
-        Class<?> type = baseType;
-        while (type != null && type != Object.class) {
-            types.add (type);
-
-            Class<?>[] temp = type.getInterfaces ();
-            for (Class<?> t : temp) {
-                String name = t.getCanonicalName ();
-                if (exclude (name)) {
-                    continue;
-                }
-                findAllType (t, types);
-            }
+    long getVersion () {
+        return snapshot.version;
+    }
 
-            type = type.getSuperclass ();
-        }
+    /**
+     * 在当前线程中推迟发布快照，直到调用 {@link #publishDeferred()}
+     */
+    void deferPublishing () {
+        deferred.set (Boolean.TRUE);
     }
 
     /**
-     * 映射方法类型。
-     * <ul>
-     * <li>只有public方法才会被映射</li>
-     * <li>标注为 {@link Resource} 的方法映射为 1</li>
-     * <li>标注为 {@link PostConstruct} 的方法映射为 2</li>
-     * <li>标注为 {@link PreDestroy} 的方法映射为 3</li>
-     * <li>其他映射为 -1</li>
-     * </ul>
-     * @param method 需要映射的方法
-     * @return 映射后的代码
+     * 结束当前线程的推迟状态，并发布积压的变化。若当前线程不在推迟状态，什么也不做
      */
-    private int map (Method method) {
-        int code = -1;
-        if (method.isAnnotationPresent (Resource.class)) {
-            code = 1;
-        } else if (method.isAnnotationPresent (PostConstruct.class)) {
-            code = 2;
-        } else if (method.isAnnotationPresent (PreDestroy.class)) {
-            if (logger.isTraceEnabled ()) {
-                logger.trace ("found a pre-destroy method of {}: {}", method.getDeclaringClass (), method);
+    void publishDeferred () {
+        if (deferred.get () != null) {
+            deferred.remove ();
+            synchronized (this) {
+                publish ();
             }
-            code = 3;
         }
+    }
 
-        int modifier = method.getModifiers ();
-        if ((modifier & Modifier.PUBLIC) != 0) {
-            return code;
+    /**
+     * 根据当前的映射构建一个新的只读快照，并发布出去.
+     *
+     * <p>调用者必须持有本对象的锁</p>
+     */
+    private void publish () {
+        Map<Class<?>, Object> types = new HashMap<> (mappedByType.size ());
+        for (Map.Entry<Class<?>, Object> e : mappedByType.entrySet ()) {
+            Object o = e.getValue ();
+            if (o instanceof InnerList) {
+                // 列表是可变的，快照中必须持有一份拷贝
+                o = new InnerList ((InnerList) o);
+            }
+            types.put (e.getKey (), o);
         }
-        return -1;
+        snapshot = new Snapshot (
+                snapshot.version + 1,
+                Collections.unmodifiableMap (new HashMap<> (mappedByName)),
+                Collections.unmodifiableMap (types)
+        );
     }
 
     /**
@@ -348,11 +352,7 @@ public class SimpleServiceRouter implements IServiceRouter {
             throw new InstanceNotFoundException ("field " + field + " cannot be injected. The annotated object was not registered.");
         }
 
-        if (!field.isAccessible ()) {
-            field.setAccessible (true);
-        }
-
-        field.set (bean, value);
+        Injectors.set (field, bean, value);
     }
 
     /**
@@ -381,7 +381,7 @@ public class SimpleServiceRouter implements IServiceRouter {
         if (value == null) {
             throw new InstanceNotFoundException ("method " + method + " cannot be injected. The annotated object was not registered.");
         }
-        method.invoke (bean, value);
+        Injectors.invoke (method, bean, value);
     }
 
     /**
@@ -414,7 +414,7 @@ public class SimpleServiceRouter implements IServiceRouter {
                 beanName = type.getSimpleName ();
                 beanName = Character.toLowerCase (beanName.charAt (0)) + beanName.substring (1);
             }
-            Object value = method.invoke (bean);
+            Object value = Injectors.invoke (method, bean);
             if (value == null) {
                 throw new RuntimeException ("The method " + method + " returns null");
             }
@@ -442,29 +442,28 @@ public class SimpleServiceRouter implements IServiceRouter {
             if (value == null) {
                 throw new RuntimeException ("cannot find bean: " + type);
             }
-            method.invoke (bean, value);
+            Injectors.invoke (method, bean, value);
         }
     }
 
-    public void setResolved (boolean resolved) {
-        this.resolved.set (resolved);
-    }
-
     /**
-     * 是否是排除 {@link #EXCLUDE_PREFIXES} 列表中的类
-     * @param name 类的全限定名称
-     * @return 若是返回 {@code true}，否则 {@code false}
+     * 设置当前线程的依赖注入是否已解决.
+     *
+     * <p>设置为 {@code false} 表示当前线程开始扫描托管对象，扫描期间注册的对象不会立即解决注入依赖；
+     * 设置为 {@code true} 表示扫描结束，此后注册的对象都将立即解决注入依赖</p>
+     * @param resolved 是否已解决
      */
-    private boolean exclude (String name) {
-        if (name.startsWith ("java.util.concurrent.")) {
-            return false;
-        }
-        for (String prefix : EXCLUDE_PREFIXES) {
-            if (name.startsWith (prefix)) {
-                return true;
-            }
+    public void setResolved (boolean resolved) {
+        if (resolved) {
+            scanning.remove ();
+            this.resolved.set (true);
+        } else {
+            scanning.set (Boolean.TRUE);
         }
-        return false;
+    }
+
+    private boolean isResolved () {
+        return resolved.get () && scanning.get () == null;
     }
 
     /**
@@ -480,7 +479,35 @@ public class SimpleServiceRouter implements IServiceRouter {
         return Character.toLowerCase (name.charAt (0)) + name.substring (1);
     }
 
-    public static final class InnerList extends LinkedList<Object> {}
+    /**
+     * 同一类型绑定了多个实例时使用的列表。数量通常很少，使用数组实现
+     */
+    public static final class InnerList extends ArrayList<Object> {
+        public InnerList () {
+            super (4);
+        }
+
+        public InnerList (Collection<?> c) {
+            super (c);
+        }
+    }
+
+    /**
+     * 服务注册表的不可变快照
+     */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot (0, Collections.emptyMap (), Collections.emptyMap ());
+
+        final long version;
+        final Map<String, Object> names;
+        final Map<Class<?>, Object> types;
+
+        Snapshot (long version, Map<String, Object> names, Map<Class<?>, Object> types) {
+            this.version = version;
+            this.names = names;
+            this.types = types;
+        }
+    }
 
     public static class ContextCache implements Serializable {
         Set<String> names = new HashSet<> ();
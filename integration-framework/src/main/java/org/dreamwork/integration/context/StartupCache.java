@@ -0,0 +1,386 @@
+package org.dreamwork.integration.context;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.dreamwork.integration.api.ModuleInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 持久化的启动缓存.
+ *
+ * <p>模块的 jar 文件在两次启动之间很少发生变化。启动缓存以模块 {@code libs} 目录下每个 jar 文件的内容摘要为键，
+ * 在 {@code framework.tmp.dir/startup-cache} 目录下为每个模块保存：</p>
+ * <ul>
+ *     <li>从 {@code META-INF/module.properties} 解析出来的模块信息</li>
+ *     <li>{@code @AModule} 展开后需要扫描的包</li>
+ *     <li>每个包中被扫描器接受的类</li>
+ *     <li>扫描时记录的候选类，比如 restful 处理类</li>
+ * </ul>
+ * <p>以及所有模块按依赖关系排好序的启动顺序。再次启动时，若模块的所有 jar 文件都没有变化，直接使用缓存的结果。</p>
+ * <p>jar 文件的大小和修改时间都没有变化时不再重新计算摘要</p>
+ *
+ * @since 1.1.0
+ */
+class StartupCache {
+    private static final int    VERSION    = 2;
+    private static final String ORDER_FILE = "module-order.json";
+    private static final String SUFFIX     = ".module.json";
+
+    private final Logger logger = LoggerFactory.getLogger (StartupCache.class);
+    private final Gson gson = new GsonBuilder ().setPrettyPrinting ().create ();
+    private final Path dir;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<> ();
+    private OrderData order;
+    private boolean orderDirty;
+
+    StartupCache (Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * 获取指定模块的缓存项。若模块的 jar 文件发生了变化，返回一个空的缓存项
+     * @param module 模块目录名称
+     * @param urls   模块 classpath 上的所有 jar 文件
+     * @return 缓存项
+     */
+    Entry get (String module, URL[] urls) {
+        Map<String, Fingerprint> current = new TreeMap<> ();
+        Map<String, Fingerprint> previous = Collections.emptyMap ();
+        EntryData data = read (dir.resolve (module + SUFFIX), EntryData.class);
+        if (data != null && data.version == VERSION && data.jars != null) {
+            previous = data.jars;
+        }
+
+        boolean valid = data != null && data.version == VERSION && data.jars != null;
+        for (URL url : urls) {
+            try {
+                Path path = Paths.get (url.toURI ());
+                String name = path.getFileName ().toString ();
+                Fingerprint fp = fingerprint (path, previous.get (name));
+                current.put (name, fp);
+                Fingerprint old = previous.get (name);
+                if (old == null || !fp.digest.equals (old.digest)) {
+                    valid = false;
+                }
+            } catch (IOException | URISyntaxException | IllegalArgumentException ex) {
+                logger.warn ("cannot fingerprint {}: {}", url, ex.getMessage ());
+                valid = false;
+            }
+        }
+        if (current.size () != previous.size ()) {
+            valid = false;
+        }
+
+        Entry entry;
+        if (valid) {
+            entry = new Entry (module, data);
+            if (logger.isTraceEnabled ()) {
+                logger.trace ("startup cache of module [{}] hit", module);
+            }
+        } else {
+            EntryData fresh = new EntryData ();
+            fresh.version = VERSION;
+            fresh.jars    = current;
+            entry = new Entry (module, fresh);
+            entry.dirty = true;
+            if (logger.isTraceEnabled ()) {
+                logger.trace ("startup cache of module [{}] missed", module);
+            }
+        }
+        entries.put (module, entry);
+        return entry;
+    }
+
+    /**
+     * 查找已经通过 {@link #get(String, URL[])} 获取过的缓存项
+     * @param module 模块目录名称
+     * @return 缓存项，不存在时返回 {@code null}
+     */
+    Entry find (String module) {
+        return entries.get (module);
+    }
+
+    /**
+     * 获取模块的启动顺序
+     * @param modules 所有模块，必须已经解析了依赖关系
+     * @param sorter  缓存未命中时计算启动顺序的方法
+     * @return 按依赖关系排好序的模块列表
+     */
+    List<ModuleInfo> order (Map<String, ModuleInfo> modules, Function<Map<String, ModuleInfo>, List<ModuleInfo>> sorter) {
+        String key = orderKey (modules);
+        if (order == null) {
+            order = read (dir.resolve (ORDER_FILE), OrderData.class);
+        }
+        if (key != null && order != null && key.equals (order.key) && order.names != null) {
+            List<ModuleInfo> list = new ArrayList<> (order.names.size ());
+            for (String name : order.names) {
+                ModuleInfo info = modules.get (name);
+                if (info == null) {
+                    list = null;
+                    break;
+                }
+                list.add (info);
+            }
+            if (list != null && list.size () == modules.size ()) {
+                return list;
+            }
+        }
+
+        List<ModuleInfo> list = sorter.apply (modules);
+        if (key != null) {
+            order = new OrderData ();
+            order.key   = key;
+            order.names = new ArrayList<> (list.size ());
+            for (ModuleInfo info : list) {
+                order.names.add (info.name);
+            }
+            orderDirty = true;
+        }
+        return list;
+    }
+
+    /**
+     * 将发生变化的缓存写入磁盘，并删除已不存在的模块的缓存
+     */
+    void save () {
+        try {
+            if (!Files.exists (dir)) {
+                Files.createDirectories (dir);
+            }
+            for (Entry entry : entries.values ()) {
+                if (entry.dirty) {
+                    write (dir.resolve (entry.module + SUFFIX), entry.data);
+                    entry.dirty = false;
+                }
+            }
+            if (orderDirty) {
+                write (dir.resolve (ORDER_FILE), order);
+                orderDirty = false;
+            }
+            try (Stream<Path> stream = Files.list (dir)) {
+                stream.filter (p -> {
+                    String name = p.getFileName ().toString ();
+                    return name.endsWith (SUFFIX) && !entries.containsKey (name.substring (0, name.length () - SUFFIX.length ()));
+                }).forEach (p -> {
+                    try {
+                        Files.delete (p);
+                    } catch (IOException ignore) {}
+                });
+            }
+        } catch (IOException ex) {
+            logger.warn ("cannot save startup cache: {}", ex.getMessage ());
+        }
+    }
+
+    /**
+     * 用所有模块的 jar 摘要计算启动顺序的缓存键
+     */
+    private String orderKey (Map<String, ModuleInfo> modules) {
+        StringBuilder builder = new StringBuilder ();
+        for (String name : new TreeSet<> (modules.keySet ())) {
+            Entry entry = entries.get (name);
+            if (entry == null) {
+                // 不是本次启动时加载的模块，不缓存
+                return null;
+            }
+            builder.append (name).append ('=');
+            entry.data.jars.forEach ((jar, fp) -> builder.append (jar).append (':').append (fp.digest).append (';'));
+            builder.append ('\n');
+        }
+        return digest (builder.toString ().getBytes (StandardCharsets.UTF_8));
+    }
+
+    private Fingerprint fingerprint (Path path, Fingerprint previous) throws IOException {
+        long size = Files.size (path);
+        long modified = Files.getLastModifiedTime (path).toMillis ();
+        if (previous != null && previous.size == size && previous.modified == modified && previous.digest != null) {
+            return previous;
+        }
+
+        Fingerprint fp = new Fingerprint ();
+        fp.size     = size;
+        fp.modified = modified;
+        MessageDigest md = newDigest ();
+        byte[] buff = new byte[65536];
+        try (InputStream in = Files.newInputStream (path)) {
+            int length;
+            while ((length = in.read (buff)) > 0) {
+                md.update (buff, 0, length);
+            }
+        }
+        fp.digest = hex (md.digest ());
+        return fp;
+    }
+
+    private <T> T read (Path path, Class<T> type) {
+        if (Files.exists (path)) {
+            try (Reader reader = Files.newBufferedReader (path, StandardCharsets.UTF_8)) {
+                return gson.fromJson (reader, type);
+            } catch (IOException | JsonParseException ex) {
+                logger.warn ("cannot read startup cache {}: {}", path, ex.getMessage ());
+            }
+        }
+        return null;
+    }
+
+    private void write (Path path, Object data) throws IOException {
+        try (Writer writer = Files.newBufferedWriter (path, StandardCharsets.UTF_8)) {
+            gson.toJson (data, writer);
+        }
+    }
+
+    private static String digest (byte[] data) {
+        return hex (newDigest ().digest (data));
+    }
+
+    private static MessageDigest newDigest () {
+        try {
+            return MessageDigest.getInstance ("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            // 所有 jre 都必须支持 SHA-1
+            throw new IllegalStateException (ex);
+        }
+    }
+
+    private static String hex (byte[] data) {
+        StringBuilder builder = new StringBuilder (data.length * 2);
+        for (byte b : data) {
+            builder.append (Character.forDigit ((b >> 4) & 0xf, 16)).append (Character.forDigit (b & 0xf, 16));
+        }
+        return builder.toString ();
+    }
+
+    /**
+     * 一个模块的缓存项
+     */
+    static final class Entry {
+        private final String module;
+        private final EntryData data;
+        private volatile boolean dirty;
+
+        private Entry (String module, EntryData data) {
+            this.module = module;
+            this.data   = data;
+        }
+
+        /**
+         * 缓存的模块信息
+         * @return 模块信息，未缓存时返回 {@code null}
+         */
+        ModuleInfo getModuleInfo () {
+            InfoData d = data.info;
+            if (d == null) {
+                return null;
+            }
+            ModuleInfo info   = new ModuleInfo (d.name, d.impl, false);
+            info.extra        = d.extra;
+            info.context      = d.context;
+            info.version      = d.version;
+            info.memo         = d.memo;
+            info.apiPackages  = d.apiPackages;
+            info.api          = d.api;
+            info.basedir      = d.basedir;
+            info.requireHttpd = d.requireHttpd;
+            return info;
+        }
+
+        void setModuleInfo (ModuleInfo info) {
+            InfoData d     = new InfoData ();
+            d.name         = info.name;
+            d.impl         = info.impl;
+            d.extra        = info.extra;
+            d.context      = info.context;
+            d.version      = info.version;
+            d.memo         = info.memo;
+            d.apiPackages  = info.apiPackages;
+            d.api          = info.api;
+            d.basedir      = info.basedir;
+            d.requireHttpd = info.requireHttpd;
+            data.info = d;
+            dirty = true;
+        }
+
+        /**
+         * 缓存的需要扫描的包
+         * @return 包名集合，未缓存时返回 {@code null}
+         */
+        Set<String> getPackages () {
+            return data.packages == null ? null : new HashSet<> (data.packages);
+        }
+
+        void setPackages (Collection<String> packages) {
+            data.packages = new TreeSet<> (packages);
+            dirty = true;
+        }
+
+        /**
+         * 缓存的扫描结果
+         * @return 包名 -> 被扫描器接受的类名，未缓存时返回 {@code null}
+         */
+        Map<String, List<String>> getClasses () {
+            return data.classes;
+        }
+
+        void setClasses (Map<String, List<String>> classes) {
+            data.classes = new TreeMap<> (classes);
+            dirty = true;
+        }
+
+        /**
+         * 缓存的候选类
+         * @return 注解类名 -> 包名 -> 类名，未缓存时返回 {@code null}
+         */
+        Map<String, Map<String, List<String>>> getCandidates () {
+            return data.candidates;
+        }
+
+        void setCandidates (Map<String, Map<String, List<String>>> candidates) {
+            data.candidates = new TreeMap<> (candidates);
+            dirty = true;
+        }
+    }
+
+    private static final class Fingerprint {
+        long size, modified;
+        String digest;
+    }
+
+    private static final class InfoData {
+        String name, impl, extra, context, version, memo, basedir;
+        String[] apiPackages;
+        boolean api, requireHttpd;
+    }
+
+    private static final class EntryData {
+        int version;
+        Map<String, Fingerprint> jars;
+        InfoData info;
+        Set<String> packages;
+        Map<String, List<String>> classes;
+        Map<String, Map<String, List<String>>> candidates;
+    }
+
+    private static final class OrderData {
+        String key;
+        List<String> names;
+    }
+}
@@ -3,8 +3,7 @@ package org.dreamwork.integration.context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.*;
 
 /**
  * Created by seth.yang on 2020/4/22
@@ -12,9 +11,8 @@ import java.util.concurrent.Future;
 class StartupMonitor {
     private int timeout;
     private ExecutorService executor;
-    private boolean error;
+    private volatile boolean error;
 
-    private final Object LOCKER = new byte[0];
     private final Logger logger = LoggerFactory.getLogger (StartupMonitor.class);
 
     StartupMonitor (ExecutorService executor, int timeout) {
@@ -33,29 +31,31 @@ class StartupMonitor {
             } catch (Exception ex) {
                 logger.warn (ex.getMessage (), ex);
                 error = true;
-            } finally {
-                synchronized (LOCKER) {
-                    LOCKER.notifyAll ();
-                }
             }
         });
-        synchronized (LOCKER) {
-            try {
-                if (logger.isTraceEnabled ()) {
-                    logger.trace ("wait up to {} ms for executing task", timeout + 100);
-                }
-                LOCKER.wait (timeout + 100);    // 多等100ms
-            } catch (InterruptedException ex) {
-                if (logger.isTraceEnabled ()) {
-                    logger.warn (ex.getMessage (), ex);
-                }
+        boolean timeout = false;
+        try {
+            if (logger.isTraceEnabled ()) {
+                logger.trace ("wait up to {} ms for executing task", this.timeout + 100);
+            }
+            future.get (this.timeout + 100, TimeUnit.MILLISECONDS);    // 多等100ms
+        } catch (TimeoutException ex) {
+            timeout = true;
+        } catch (InterruptedException ex) {
+            if (logger.isTraceEnabled ()) {
+                logger.warn (ex.getMessage (), ex);
             }
+            Thread.currentThread ().interrupt ();
+            timeout = true;
+        } catch (ExecutionException ex) {
+            logger.warn (ex.getMessage (), ex);
+            error = true;
         }
         long delta = System.currentTimeMillis () - timestamp;
         if (logger.isTraceEnabled ()) {
             logger.trace ("task execution take {} ms.", delta);
         }
-        if (delta > timeout) {
+        if (timeout) {
             // 执行超时，强制停止
             future.cancel (true);
             try {
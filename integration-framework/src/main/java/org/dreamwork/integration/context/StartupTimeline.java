@@ -0,0 +1,119 @@
+package org.dreamwork.integration.context;
+
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 框架的启动时间线.
+ *
+ * <p>以纳秒精度记录框架启动过程中各个阶段的耗时，每个阶段称为一个 {@link Span}。
+ * 一个阶段可以属于某个模块，也可以属于框架本身。阶段可以在任意线程中记录，
+ * 并行启动的模块会在时间线上相互重叠。</p>
+ * <p>典型的用法：</p>
+ * <pre>
+ * try (StartupTimeline.Span ignored = timeline.begin ("scan", moduleName)) {
+ *     scanner.scan (packages);
+ * }
+ * </pre>
+ *
+ * @since 1.1.0
+ */
+class StartupTimeline {
+    private final long origin    = System.nanoTime ();
+    private final long timestamp = System.currentTimeMillis ();
+    private final Queue<Span> spans = new ConcurrentLinkedQueue<> ();
+
+    /**
+     * 开始记录一个框架阶段
+     * @param name 阶段名称
+     * @return 阶段对象，关闭时完成记录
+     */
+    Span begin (String name) {
+        return begin (name, null);
+    }
+
+    /**
+     * 开始记录一个模块阶段
+     * @param name   阶段名称
+     * @param module 模块名称，若为 {@code null} 表示框架本身
+     * @return 阶段对象，关闭时完成记录
+     */
+    Span begin (String name, String module) {
+        return new Span (name, module);
+    }
+
+    /**
+     * 按开始时间排序的所有已完成的阶段
+     * @return 阶段列表
+     */
+    List<Span> getSpans () {
+        List<Span> list = new ArrayList<> (spans);
+        list.sort (Comparator.comparingLong ((Span s) -> s.start).thenComparing (s -> s.name));
+        return list;
+    }
+
+    /**
+     * 将时间线转换成 json 格式，时间单位为微秒
+     * @return json 字符串
+     */
+    String toJson () {
+        Map<String, Object> root = new LinkedHashMap<> ();
+        root.put ("timestamp", timestamp);
+        List<Map<String, Object>> list = new ArrayList<> ();
+        long total = 0;
+        for (Span span : getSpans ()) {
+            Map<String, Object> item = new LinkedHashMap<> ();
+            item.put ("name", span.name);
+            if (span.module != null) {
+                item.put ("module", span.module);
+            }
+            item.put ("thread", span.thread);
+            item.put ("start", span.start / 1000);
+            item.put ("duration", (span.end - span.start) / 1000);
+            list.add (item);
+
+            total = Math.max (total, span.end);
+        }
+        root.put ("total", total / 1000);
+        root.put ("spans", list);
+        return new GsonBuilder ().setPrettyPrinting ().create ().toJson (root);
+    }
+
+    /**
+     * 将时间线写入指定的文件
+     * @param file 目标文件
+     * @throws IOException io exception
+     */
+    void write (Path file) throws IOException {
+        Files.write (file, toJson ().getBytes (StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 时间线上的一个阶段
+     */
+    final class Span implements AutoCloseable {
+        final String name, module, thread;
+        /** 相对于时间线起点的纳秒数 */
+        final long start;
+        long end;
+
+        private Span (String name, String module) {
+            this.name   = name;
+            this.module = module;
+            this.thread = Thread.currentThread ().getName ();
+            this.start  = System.nanoTime () - origin;
+        }
+
+        @Override
+        public void close () {
+            end = System.nanoTime () - origin;
+            spans.add (this);
+        }
+    }
+}
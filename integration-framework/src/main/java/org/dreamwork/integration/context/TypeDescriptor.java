@@ -0,0 +1,186 @@
+package org.dreamwork.integration.context;
+
+import org.dreamwork.integration.api.annotation.AConfigured;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * 类型描述符.
+ *
+ * <p>缓存了一个类型在注册服务时需要的全部反射信息：展开后的继承树，标注为 {@link AConfigured} 的字段，
+ * 以及每个具体类型上需要注入的字段和方法。</p>
+ * <p>描述符通过 {@link ClassValue} 挂在类型本身上，在各次注册及各个模块之间共享，
+ * 且不会阻止模块的 classloader 被回收</p>
+ *
+ * @since 1.1.0
+ */
+final class TypeDescriptor {
+    /**
+     * 排除的包名。
+     *
+     * <p>某些 jdk 自带的接口不适合作为类型索引，应该排除它们</p>
+     */
+    private static final String[] EXCLUDE_PREFIXES = {
+            "java.util.", "java.io."
+    };
+
+    private static final ClassValue<TypeDescriptor> DESCRIPTORS = new ClassValue<TypeDescriptor> () {
+        @Override
+        protected TypeDescriptor computeValue (Class<?> type) {
+            return new TypeDescriptor (type);
+        }
+    };
+
+    /** 继承树上的各个类型 (java.lang.Object 除外) */
+    final Class<?>[] types;
+    /** 继承树上所有标注为 {@link AConfigured} 的字段 */
+    final Field[] configuredFields;
+    /** 继承树上每个具体类型的注入计划，和 {@link #types} 中的非接口类型一一对应 */
+    final ResolvePlan[] plans;
+
+    static TypeDescriptor of (Class<?> type) {
+        return DESCRIPTORS.get (type);
+    }
+
+    private TypeDescriptor (Class<?> baseType) {
+        Set<Class<?>> set = new LinkedHashSet<> ();
+        findAllType (baseType, set);
+        types = set.toArray (new Class<?>[0]);
+
+        List<Field> configured = new ArrayList<> ();
+        List<ResolvePlan> list = new ArrayList<> ();
+        for (Class<?> type : types) {
+            Field[] fields = type.getDeclaredFields ();
+            for (Field field : fields) {
+                if (field.isAnnotationPresent (AConfigured.class)) {
+                    configured.add (field);
+                }
+            }
+            if (!type.isInterface ()) {
+                list.add (new ResolvePlan (type, fields));
+            }
+        }
+        configuredFields = configured.toArray (new Field[0]);
+        plans = list.toArray (new ResolvePlan[0]);
+    }
+
+    /**
+     * 展开类的继承树，并将每个层级的类放在集合中
+     * @param baseType 基本类型
+     * @param types    出参。每个层级的类型都会被放在这个集合中
+     */
+    private static void findAllType (Class<?> baseType, Set<Class<?>> types) {
+        Class<?> type = baseType;
+        while (type != null && type != Object.class) {
+            types.add (type);
+
+            Class<?>[] temp = type.getInterfaces ();
+            for (Class<?> t : temp) {
+                String name = t.getCanonicalName ();
+                if (exclude (name)) {
+                    continue;
+                }
+                findAllType (t, types);
+            }
+
+            type = type.getSuperclass ();
+        }
+    }
+
+    /**
+     * 是否是排除 {@link #EXCLUDE_PREFIXES} 列表中的类
+     * @param name 类的全限定名称
+     * @return 若是返回 {@code true}，否则 {@code false}
+     */
+    private static boolean exclude (String name) {
+        if (name == null) {
+            // 匿名类或局部类没有规范名称
+            return false;
+        }
+        if (name.startsWith ("java.util.concurrent.")) {
+            return false;
+        }
+        for (String prefix : EXCLUDE_PREFIXES) {
+            if (name.startsWith (prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 映射方法类型。
+     * <ul>
+     * <li>只有public方法才会被映射</li>
+     * <li>标注为 {@link Resource} 的方法映射为 1</li>
+     * <li>标注为 {@link PostConstruct} 的方法映射为 2</li>
+     * <li>标注为 {@link PreDestroy} 的方法映射为 3</li>
+     * <li>其他映射为 -1</li>
+     * </ul>
+     * @param method 需要映射的方法
+     * @return 映射后的代码
+     */
+    private static int map (Method method) {
+        int code = -1;
+        if (method.isAnnotationPresent (Resource.class)) {
+            code = 1;
+        } else if (method.isAnnotationPresent (PostConstruct.class)) {
+            code = 2;
+        } else if (method.isAnnotationPresent (PreDestroy.class)) {
+            code = 3;
+        }
+
+        int modifier = method.getModifiers ();
+        if ((modifier & Modifier.PUBLIC) != 0) {
+            return code;
+        }
+        return -1;
+    }
+
+    /**
+     * 一个具体类型上的注入计划
+     */
+    static final class ResolvePlan {
+        final Class<?> type;
+        /** 标注为 {@link Resource} 的字段 */
+        final Field[] resourceFields;
+        /** 标注为 {@link Resource} 的 getter/setter */
+        final Method[] resourceMethods;
+        final Method postConstruct;
+
+        private ResolvePlan (Class<?> type, Field[] fields) {
+            this.type = type;
+
+            List<Field> list = new ArrayList<> ();
+            for (Field field : fields) {
+                if (field.isAnnotationPresent (Resource.class)) {
+                    list.add (field);
+                }
+            }
+            resourceFields = list.toArray (new Field[0]);
+
+            List<Method> methods = new ArrayList<> ();
+            Method pc = null;
+            for (Method method : type.getDeclaredMethods ()) {
+                if (method.isAnnotationPresent (Resource.class)) {
+                    switch (map (method)) {
+                        case 1: // 标注为 Resource 的方法
+                            methods.add (method);
+                            break;
+                        case 2: // 标注为 PostConstruct 的方法
+                            pc = method;
+                            break;
+                    }
+                }
+            }
+            resourceMethods = methods.toArray (new Method[0]);
+            postConstruct = pc;
+        }
+    }
+}
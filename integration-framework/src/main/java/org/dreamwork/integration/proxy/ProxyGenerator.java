@@ -0,0 +1,358 @@
+package org.dreamwork.integration.proxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 为一组接口生成直接委托给目标对象的实现类.
+ *
+ * <p>生成的类形如：</p>
+ * <pre>
+ * public final class Proxy$N implements I1, I2 {
+ *     private final Object target;
+ *     public Proxy$N (Object target) { this.target = target; }
+ *     public R m (A a, B b) { return ((I1) target).m (a, b); }
+ *     ...
+ * }
+ * </pre>
+ * <p>每个方法都是一条 {@code invokeinterface}，不装箱参数，也不分配 {@code Object[]}。
+ * 由于直接调用，只有目标对象实现了<strong>同一个</strong>接口类（即接口由公共父级加载器加载）时才能生成，
+ * 否则抛出 {@link IllegalArgumentException}，由调用方回退到 {@link java.lang.reflect.Proxy 动态代理}</p>
+ *
+ * @since 1.1.0
+ */
+final class ProxyGenerator {
+    private static final String PREFIX = "org/dreamwork/integration/proxy/generated/Proxy$";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String FIELD  = "target";
+
+    private static final AtomicInteger counter = new AtomicInteger ();
+
+    private ProxyGenerator () {}
+
+    /**
+     * 在 {@code loader} 之下定义一个实现了所有接口的代理类
+     * @param loader     代理类的父级加载器，接口必须能被它看到
+     * @param interfaces 需要实现的接口
+     * @return 代理类，有一个 {@code (Object)} 的公开构造器
+     */
+    static Class<?> generate (ClassLoader loader, Class<?>... interfaces) {
+        for (Class<?> type : interfaces) {
+            if (!type.isInterface () || !Modifier.isPublic (type.getModifiers ())) {
+                throw new IllegalArgumentException (type + " is not a public interface");
+            }
+        }
+        String name = PREFIX + counter.incrementAndGet ();
+        byte[] bytes = write (name, interfaces);
+        return new DefiningLoader (loader).define (name.replace ('/', '.'), bytes);
+    }
+
+    private static byte[] write (String name, Class<?>[] interfaces) {
+        ConstantPool pool = new ConstantPool ();
+        int thisClass  = pool.type (name);
+        int superClass = pool.type (OBJECT);
+        int field = pool.field (name, FIELD, "L" + OBJECT + ";");
+
+        List<byte[]> methods = new ArrayList<> ();
+        methods.add (constructor (pool, field));
+
+        // 按签名检查返回值是否兼容，同时保留 Proxy 会转发的 equals/hashCode/toString
+        Map<String, Method> signatures = new HashMap<> ();
+        // 按描述符去重。多个接口以协变的返回值声明同一个方法时，每个描述符都需要一个实现，
+        // 否则通过返回值较宽的接口调用时会抛出 AbstractMethodError
+        Map<String, Method> descriptors = new LinkedHashMap<> ();
+        try {
+            for (Method m : new Method[] {
+                    Object.class.getMethod ("equals", Object.class),
+                    Object.class.getMethod ("hashCode"),
+                    Object.class.getMethod ("toString")
+            }) {
+                signatures.put (m.getName () + parameters (m.getParameterTypes ()), m);
+                descriptors.put (m.getName () + descriptor (m), m);
+            }
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException (ex);
+        }
+        for (Class<?> type : interfaces) {
+            for (Method m : type.getMethods ()) {
+                if (Modifier.isStatic (m.getModifiers ())) {
+                    continue;
+                }
+                String key = m.getName () + parameters (m.getParameterTypes ());
+                Method exist = signatures.putIfAbsent (key, m);
+                if (exist != null && exist.getReturnType () != m.getReturnType ()
+                        && !exist.getReturnType ().isAssignableFrom (m.getReturnType ())
+                        && !m.getReturnType ().isAssignableFrom (exist.getReturnType ())) {
+                    throw new IllegalArgumentException ("incompatible methods: " + exist + ", " + m);
+                }
+                descriptors.putIfAbsent (m.getName () + descriptor (m), m);
+            }
+        }
+        for (Method m : descriptors.values ()) {
+            methods.add (delegate (pool, field, m));
+        }
+
+        try {
+            ByteArrayOutputStream buff = new ByteArrayOutputStream ();
+            DataOutputStream out = new DataOutputStream (buff);
+            out.writeInt (0xCAFEBABE);
+            out.writeShort (0);
+            out.writeShort (52);                    // java 8
+            int[] types = new int[interfaces.length];
+            for (int i = 0; i < interfaces.length; i ++) {
+                types[i] = pool.type (internal (interfaces[i]));
+            }
+            pool.write (out);
+            out.writeShort (0x0001 | 0x0010 | 0x0020);  // public final super
+            out.writeShort (thisClass);
+            out.writeShort (superClass);
+            out.writeShort (types.length);
+            for (int type : types) {
+                out.writeShort (type);
+            }
+            // fields
+            out.writeShort (1);
+            out.writeShort (0x0002 | 0x0010);       // private final
+            out.writeShort (pool.utf8 (FIELD));
+            out.writeShort (pool.utf8 ("L" + OBJECT + ";"));
+            out.writeShort (0);
+            // methods
+            out.writeShort (methods.size ());
+            for (byte[] method : methods) {
+                out.write (method);
+            }
+            // attributes
+            out.writeShort (0);
+            out.flush ();
+            return buff.toByteArray ();
+        } catch (IOException ex) {
+            throw new IllegalStateException (ex);
+        }
+    }
+
+    /** public (Object target) { super (); this.target = target; } */
+    private static byte[] constructor (ConstantPool pool, int field) {
+        Code code = new Code ();
+        code.op (0x2a);                             // aload_0
+        code.op (0xb7).u2 (pool.method (OBJECT, "<init>", "()V", false));   // invokespecial
+        code.op (0x2a);                             // aload_0
+        code.op (0x2b);                             // aload_1
+        code.op (0xb5).u2 (field);                  // putfield
+        code.op (0xb1);                             // return
+        return code.toMethod (pool, "<init>", "(L" + OBJECT + ";)V", 2, 2);
+    }
+
+    /** public R m (A a, B b) { return ((I) target).m (a, b); } */
+    private static byte[] delegate (ConstantPool pool, int field, Method m) {
+        Class<?> owner = m.getDeclaringClass ();
+        String descriptor = descriptor (m);
+        boolean isInterface = owner.isInterface ();
+        if (isInterface && !Modifier.isPublic (owner.getModifiers ())) {
+            throw new IllegalArgumentException (owner + " is not public");
+        }
+
+        Code code = new Code ();
+        code.op (0x2a);                             // aload_0
+        code.op (0xb4).u2 (field);                  // getfield
+        if (isInterface) {
+            code.op (0xc0).u2 (pool.type (internal (owner)));   // checkcast
+        }
+        int slot = 1;
+        for (Class<?> type : m.getParameterTypes ()) {
+            if (slot > 0xff) {
+                throw new IllegalArgumentException ("too many parameters: " + m);
+            }
+            code.op (load (type)).u1 (slot);
+            slot += size (type);
+        }
+        int ref = pool.method (isInterface ? internal (owner) : OBJECT, m.getName (), descriptor, isInterface);
+        if (isInterface) {
+            code.op (0xb9).u2 (ref).u1 (slot).u1 (0);           // invokeinterface
+        } else {
+            code.op (0xb6).u2 (ref);                            // invokevirtual
+        }
+        code.op (ret (m.getReturnType ()));
+
+        int stack = Math.max (slot, size (m.getReturnType ()));
+        return code.toMethod (pool, m.getName (), descriptor, stack, slot);
+    }
+
+    private static int load (Class<?> type) {
+        if (type == long.class) return 0x16;                    // lload
+        if (type == float.class) return 0x17;                   // fload
+        if (type == double.class) return 0x18;                  // dload
+        if (type.isPrimitive ()) return 0x15;                   // iload
+        return 0x19;                                            // aload
+    }
+
+    private static int ret (Class<?> type) {
+        if (type == void.class) return 0xb1;                    // return
+        if (type == long.class) return 0xad;                    // lreturn
+        if (type == float.class) return 0xae;                   // freturn
+        if (type == double.class) return 0xaf;                  // dreturn
+        if (type.isPrimitive ()) return 0xac;                   // ireturn
+        return 0xb0;                                            // areturn
+    }
+
+    private static int size (Class<?> type) {
+        if (type == void.class) return 0;
+        return type == long.class || type == double.class ? 2 : 1;
+    }
+
+    private static String internal (Class<?> type) {
+        return type.getName ().replace ('.', '/');
+    }
+
+    private static String parameters (Class<?>[] types) {
+        StringBuilder builder = new StringBuilder ("(");
+        for (Class<?> type : types) {
+            builder.append (descriptor (type));
+        }
+        return builder.append (')').toString ();
+    }
+
+    private static String descriptor (Method m) {
+        return parameters (m.getParameterTypes ()) + descriptor (m.getReturnType ());
+    }
+
+    private static String descriptor (Class<?> type) {
+        if (type == void.class) return "V";
+        if (type == boolean.class) return "Z";
+        if (type == byte.class) return "B";
+        if (type == char.class) return "C";
+        if (type == short.class) return "S";
+        if (type == int.class) return "I";
+        if (type == long.class) return "J";
+        if (type == float.class) return "F";
+        if (type == double.class) return "D";
+        if (type.isArray ()) return internal (type);
+        return "L" + internal (type) + ";";
+    }
+
+    private static final class Code {
+        private final ByteArrayOutputStream buff = new ByteArrayOutputStream ();
+
+        Code op (int op) {
+            buff.write (op);
+            return this;
+        }
+
+        Code u1 (int value) {
+            buff.write (value);
+            return this;
+        }
+
+        Code u2 (int value) {
+            buff.write (value >> 8);
+            buff.write (value);
+            return this;
+        }
+
+        byte[] toMethod (ConstantPool pool, String name, String descriptor, int maxStack, int maxLocals) {
+            byte[] code = buff.toByteArray ();
+            ByteArrayOutputStream method = new ByteArrayOutputStream ();
+            try (DataOutputStream out = new DataOutputStream (method)) {
+                out.writeShort (0x0001);            // public
+                out.writeShort (pool.utf8 (name));
+                out.writeShort (pool.utf8 (descriptor));
+                out.writeShort (1);
+                out.writeShort (pool.utf8 ("Code"));
+                out.writeInt (12 + code.length);
+                out.writeShort (maxStack);
+                out.writeShort (maxLocals);
+                out.writeInt (code.length);
+                out.write (code);
+                out.writeShort (0);                 // exception table
+                out.writeShort (0);                 // attributes
+            } catch (IOException ex) {
+                throw new IllegalStateException (ex);
+            }
+            return method.toByteArray ();
+        }
+    }
+
+    private static final class ConstantPool {
+        private final Map<String, Integer> indices = new HashMap<> ();
+        private final ByteArrayOutputStream buff = new ByteArrayOutputStream ();
+        private final DataOutputStream out = new DataOutputStream (buff);
+        private int count = 1;
+
+        int utf8 (String value) {
+            return entry ("U" + value, () -> {
+                out.writeByte (1);
+                out.writeUTF (value);
+            });
+        }
+
+        int type (String name) {
+            int index = utf8 (name);
+            return entry ("C" + name, () -> {
+                out.writeByte (7);
+                out.writeShort (index);
+            });
+        }
+
+        int field (String owner, String name, String descriptor) {
+            return member (9, owner, name, descriptor);
+        }
+
+        int method (String owner, String name, String descriptor, boolean isInterface) {
+            return member (isInterface ? 11 : 10, owner, name, descriptor);
+        }
+
+        private int member (int tag, String owner, String name, String descriptor) {
+            int type = type (owner);
+            int n = utf8 (name), d = utf8 (descriptor);
+            int nameAndType = entry ("N" + name + ' ' + descriptor, () -> {
+                out.writeByte (12);
+                out.writeShort (n);
+                out.writeShort (d);
+            });
+            return entry (tag + owner + '.' + name + descriptor, () -> {
+                out.writeByte (tag);
+                out.writeShort (type);
+                out.writeShort (nameAndType);
+            });
+        }
+
+        private int entry (String key, Writer writer) {
+            Integer index = indices.get (key);
+            if (index == null) {
+                try {
+                    writer.write ();
+                } catch (IOException ex) {
+                    throw new IllegalStateException (ex);
+                }
+                index = count ++;
+                indices.put (key, index);
+            }
+            return index;
+        }
+
+        void write (DataOutputStream target) throws IOException {
+            out.flush ();
+            target.writeShort (count);
+            buff.writeTo (target);
+        }
+    }
+
+    private interface Writer {
+        void write () throws IOException;
+    }
+
+    /** 以调用方的 classloader 为父级，保证生成的类看到的接口和调用方看到的是同一个 */
+    private static final class DefiningLoader extends ClassLoader {
+        DefiningLoader (ClassLoader parent) {
+            super (parent);
+        }
+
+        Class<?> define (String name, byte[] bytes) {
+            return defineClass (name, bytes, 0, bytes.length);
+        }
+    }
+}
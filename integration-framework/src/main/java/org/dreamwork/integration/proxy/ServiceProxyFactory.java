@@ -1,8 +1,50 @@
 package org.dreamwork.integration.proxy;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Proxy;
+import java.util.*;
 
 public class ServiceProxyFactory {
+    /**
+     * 使用 {@link Proxy 动态代理}，默认值
+     * @since 1.1.0
+     */
+    public static final String DYNAMIC   = "dynamic";
+    /**
+     * 为每组 (接口, classloader) 生成直接调用目标对象的代理类，无法生成时回退到动态代理
+     * @since 1.1.0
+     */
+    public static final String GENERATED = "generated";
+
+    private static final Logger logger = LoggerFactory.getLogger (ServiceProxyFactory.class);
+
+    private static volatile boolean generated;
+
+    /**
+     * classloader -> (接口名称 -> 生成的代理类).
+     * <p>只弱引用生成的类，没有代理实例时可以连同它的 classloader 一起被回收</p>
+     */
+    private static final Map<ClassLoader, Map<List<String>, Reference<Class<?>>>> classes = new WeakHashMap<> ();
+    /** 生成失败的组合，不再重复尝试 */
+    private static final Map<ClassLoader, Set<List<String>>> failures = new WeakHashMap<> ();
+
+    /**
+     * 设置代理的生成策略
+     * @param strategy {@link #DYNAMIC} 或 {@link #GENERATED}
+     * @since 1.1.0
+     */
+    public static void setStrategy (String strategy) {
+        generated = GENERATED.equalsIgnoreCase (strategy);
+        if (logger.isTraceEnabled ()) {
+            logger.trace ("service proxy strategy: {}", generated ? GENERATED : DYNAMIC);
+        }
+    }
+
     @SuppressWarnings ("unchecked")
     public static<T> T createProxy (ClassLoader loader, Object target, Class<?>... interfaces) {
         if (target == null) return null;
@@ -16,7 +58,54 @@ public class ServiceProxyFactory {
             }
         }
 
+        if (generated) {
+            Object proxy = createGenerated (loader, target, copies);
+            if (proxy != null) {
+                return (T) proxy;
+            }
+        }
+
         ServiceProxyHandler handler = new ServiceProxyHandler (target, loader);
         return  (T) Proxy.newProxyInstance (/*target.getClass ().getClassLoader ()*/loader, copies, handler);
     }
+
+    private static Object createGenerated (ClassLoader loader, Object target, Class<?>[] copies) {
+        List<String> key = new ArrayList<> (copies.length);
+        for (Class<?> type : copies) {
+            // 只有目标对象实现了同一个接口类时才能直接调用
+            if (type == null || !type.isInstance (target)) {
+                return null;
+            }
+            key.add (type.getName ());
+        }
+
+        Class<?> type;
+        synchronized (classes) {
+            Set<List<String>> failed = failures.get (loader);
+            if (failed != null && failed.contains (key)) {
+                return null;
+            }
+            Map<List<String>, Reference<Class<?>>> map = classes.computeIfAbsent (loader, cl -> new HashMap<> ());
+            Reference<Class<?>> ref = map.get (key);
+            type = ref == null ? null : ref.get ();
+            if (type == null) {
+                try {
+                    type = ProxyGenerator.generate (loader, copies);
+                    map.put (key, new WeakReference<> (type));
+                } catch (Throwable t) {
+                    logger.warn ("cannot generate proxy for {}, fallback to dynamic proxy: {}", key, t.getMessage ());
+                    failures.computeIfAbsent (loader, cl -> new HashSet<> ()).add (key);
+                    return null;
+                }
+            }
+        }
+
+        try {
+            Constructor<?> c = type.getConstructor (Object.class);
+            return c.newInstance (target);
+        } catch (Exception ex) {
+            logger.warn (ex.getMessage (), ex);
+            return null;
+        }
+    }
 }
@@ -3,15 +3,40 @@ package org.dreamwork.integration.proxy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ServiceProxyHandler implements InvocationHandler {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup ();
+    /** (Object[] args)Object @since 1.1.0 */
+    private static final MethodType DISPATCH = MethodType.methodType (Object.class, Object[].class);
+    /** 返回值可以原样交给调用方 @since 1.1.0 */
+    private static final Class<?>[] AS_IS = new Class<?>[0];
+    private static final Object[] NO_ARGS = new Object[0];
+
+    /**
+     * 返回值类型 -> (调用方的 classloader -> 需要代理的接口，或 {@link #AS_IS}).
+     * <p>判断结果挂在返回值类型上，调用方的 classloader 是弱引用，都不会阻止模块被回收</p>
+     * @since 1.1.0
+     */
+    private static final ClassValue<Map<ClassLoader, Class<?>[]>> DECISIONS = new ClassValue<Map<ClassLoader, Class<?>[]>> () {
+        @Override
+        protected Map<ClassLoader, Class<?>[]> computeValue (Class<?> type) {
+            return Collections.synchronizedMap (new WeakHashMap<> ());
+        }
+    };
+
     private final Object target;
     private final ClassLoader loader;
+    /** 接口方法 -> 绑定到 target 的方法句柄，每个方法第一次调用时建立 @since 1.1.0 */
+    private final Map<Method, MethodHandle> dispatch = new ConcurrentHashMap<> ();
 
     private final Logger logger = LoggerFactory.getLogger (ServiceProxyHandler.class);
 
@@ -22,40 +47,98 @@ public class ServiceProxyHandler implements InvocationHandler {
 
     @Override
     public Object invoke (Object proxy, Method method, Object[] args) throws Throwable {
-        Class<?> type = target.getClass ();
-        String name = method.getName ();
-        Class<?>[] types = method.getParameterTypes ();
+        MethodHandle handle = dispatch.get (method);
+        if (handle == null) {
+            handle = bind (method);
+            dispatch.put (method, handle);
+        }
 
-        Method m = type.getDeclaredMethod (name, types);
-        Object o = m.invoke (target, args);
+        Object o;
+        try {
+            o = (Object) handle.invokeExact (args == null ? NO_ARGS : args);
+        } catch (Throwable t) {
+            // 和 Method.invoke 的行为保持一致
+            throw new InvocationTargetException (t);
+        }
         if (o == null) {
             return null;
         }
-        try {
-            Class<?> c = o.getClass ();
-            ClassLoader cl = c.getClassLoader ();
-            if (cl == loader) {
-                // 同一个 classloader，可安全直接返回
-                return o;
+
+        Class<?> c = o.getClass ();
+        if (c.getClassLoader () == loader) {
+            // 同一个 classloader，可安全直接返回
+            return o;
+        }
+        Class<?>[] interfaces = decide (c);
+        if (interfaces != AS_IS) {
+            try {
+                return ServiceProxyFactory.createProxy (loader, o, interfaces);
+            } catch (Exception ex) {
+                logger.warn (ex.getMessage (), ex);
             }
-            if (cl != null) {
-                if (cl.loadClass (c.getCanonicalName ()) == c) {
-                    // 这个 c 是由 cl 及 this.loader 的公共父级加载的，可安全返回
-                    return o;
-                }
+        }
+        return o;
+    }
 
-                // 不是公共父级加载，且 cl 和 loader 不是同一个
-                Set<Class<?>> set = new HashSet<> ();
-                findAllInterfaces (c, set);
-                if (!set.isEmpty ()) {
-                    return ServiceProxyFactory.createProxy (loader, o, set.toArray (new Class<?>[0]));
-                }
+    /**
+     * 找到 target 上对应的方法，编译成参数为 {@code Object[]} 的方法句柄
+     */
+    private MethodHandle bind (Method method) throws NoSuchMethodException, IllegalAccessException {
+        Class<?> type = target.getClass ();
+        String name = method.getName ();
+        Class<?>[] types = method.getParameterTypes ();
+
+        Method m = null;
+        // 沿继承链查找，equals/hashCode/toString 这类方法通常不在 target 的类上声明
+        for (Class<?> c = type; c != null && m == null; c = c.getSuperclass ()) {
+            try {
+                m = c.getDeclaredMethod (name, types);
+            } catch (NoSuchMethodException ex) {
+                // ignore, try super class
             }
-        } catch (Exception ex) {
-            logger.warn (ex.getMessage (), ex);
         }
+        if (m == null) {
+            throw new NoSuchMethodException (type.getName () + '.' + name + Arrays.toString (types));
+        }
+        if (!m.isAccessible ()) {
+            m.setAccessible (true);
+        }
+        MethodHandle handle = LOOKUP.unreflect (m);
+        if (!Modifier.isStatic (m.getModifiers ())) {
+            handle = handle.bindTo (target);
+        }
+        return handle.asSpreader (Object[].class, types.length).asType (DISPATCH);
+    }
 
-        return o;
+    /**
+     * 判断类型为 {@code c} 的返回值能否安全的交给调用方
+     * @return 需要代理的接口，若可以原样返回，返回 {@link #AS_IS}
+     */
+    private Class<?>[] decide (Class<?> c) {
+        ClassLoader cl = c.getClassLoader ();
+        if (cl == null) {
+            return AS_IS;
+        }
+        Map<ClassLoader, Class<?>[]> map = DECISIONS.get (c);
+        Class<?>[] interfaces = map.get (loader);
+        if (interfaces == null) {
+            interfaces = AS_IS;
+            try {
+                if (cl.loadClass (c.getCanonicalName ()) != c) {
+                    // 不是公共父级加载，且 cl 和 loader 不是同一个
+                    Set<Class<?>> set = new HashSet<> ();
+                    findAllInterfaces (c, set);
+                    if (!set.isEmpty ()) {
+                        interfaces = set.toArray (new Class<?>[0]);
+                    }
+                }
+                // 否则这个 c 是由 cl 及 this.loader 的公共父级加载的，可安全返回
+            } catch (Exception ex) {
+                logger.warn (ex.getMessage (), ex);
+            }
+            map.put (loader, interfaces);
+        }
+        return interfaces;
     }
 
     private void findAllInterfaces (Class<?> type, Set<Class<?>> set) {
@@ -67,4 +150,4 @@ public class ServiceProxyHandler implements InvocationHandler {
             findAllInterfaces (type.getSuperclass (), set);
         }
     }
-}
\ No newline at end of file
+}
@@ -333,11 +333,7 @@ public class Helper {
                     }
                 }
                 if (value != null) {
-                    if (!field.isAccessible ()) {
-                        field.setAccessible (true);
-                    }
-
-                    field.set (bean, value);
+                    Injectors.set (field, bean, value);
                 }
             } else if (ac.required ()) {
                 throw new ConfigurationNotFoundException ("configuration item [" + key + "] not found, but it is required");
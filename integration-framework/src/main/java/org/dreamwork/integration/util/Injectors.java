@@ -0,0 +1,272 @@
+package org.dreamwork.integration.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 依赖注入的执行器.
+ *
+ * <p>将需要注入的字段，注入/导出方法，{@code PostConstruct} 及 {@code PreDestroy} 方法编译成
+ * {@link MethodHandle}，并按所属类型缓存起来。同一个类型再次注册（比如依赖已解决后重新注册的托管对象）
+ * 时直接复用编译结果，而不必每次都经过 {@link Field#set(Object, Object)} 或
+ * {@link Method#invoke(Object, Object...)} 的反射访问检查</p>
+ * <p>编译结果通过 {@link ClassValue} 挂在声明类型上，不会阻止模块的 classloader 被回收</p>
+ * <p>调用前按反射的规则检查目标对象和参数：目标为 null 时抛出 {@link NullPointerException}，
+ * 类型不匹配时抛出 {@link IllegalArgumentException}，只有方法本身抛出的异常才会被包裹在
+ * {@link InvocationTargetException} 中</p>
+ *
+ * @since 1.1.0
+ */
+public final class Injectors {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup ();
+
+    /** (Object target, Object value)void */
+    private static final MethodType SETTER  = MethodType.methodType (void.class, Object.class, Object.class);
+    /** (Object target)Object */
+    private static final MethodType INVOKE0 = MethodType.methodType (Object.class, Object.class);
+    /** (Object target, Object arg)Object */
+    private static final MethodType INVOKE1 = MethodType.methodType (Object.class, Object.class, Object.class);
+    /** (Object target, Object[] args)Object */
+    private static final MethodType INVOKEN = MethodType.methodType (Object.class, Object.class, Object[].class);
+
+    private static final ClassValue<Map<Member, MethodHandle>> HANDLES = new ClassValue<Map<Member, MethodHandle>> () {
+        @Override
+        protected Map<Member, MethodHandle> computeValue (Class<?> type) {
+            return new ConcurrentHashMap<> ();
+        }
+    };
+
+    private Injectors () {}
+
+    /**
+     * 给字段赋值
+     * @param field  字段
+     * @param target 对象实例。静态字段时忽略
+     * @param value  字段值
+     * @throws IllegalAccessException 无法访问目标字段时抛出
+     */
+    public static void set (Field field, Object target, Object value) throws IllegalAccessException {
+        checkTarget (field, target);
+        value = coerce (field, field.getType (), value);
+        MethodHandle handle = setter (field);
+        try {
+            handle.invokeExact (target, value);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable t) {
+            throw new IllegalStateException (t);
+        }
+    }
+
+    /**
+     * 调用一个无参方法
+     * @param method 方法
+     * @param target 对象实例。静态方法时忽略
+     * @return 方法的返回值，{@code void} 方法返回 {@code null}
+     * @throws InvocationTargetException 方法本身抛出的异常被包裹在这个异常中
+     * @throws IllegalAccessException 无法访问目标方法时抛出
+     */
+    public static Object invoke (Method method, Object target) throws InvocationTargetException, IllegalAccessException {
+        checkArity (method, 0);
+        checkTarget (method, target);
+        MethodHandle handle = invoker (method);
+        try {
+            return (Object) handle.invokeExact (target);
+        } catch (Throwable t) {
+            throw new InvocationTargetException (t);
+        }
+    }
+
+    /**
+     * 调用一个单参数的方法，通常是 setter
+     * @param method 方法
+     * @param target 对象实例。静态方法时忽略
+     * @param arg    参数
+     * @return 方法的返回值，{@code void} 方法返回 {@code null}
+     * @throws InvocationTargetException 方法本身抛出的异常被包裹在这个异常中
+     * @throws IllegalAccessException 无法访问目标方法时抛出
+     */
+    public static Object invoke (Method method, Object target, Object arg) throws InvocationTargetException, IllegalAccessException {
+        checkArity (method, 1);
+        checkTarget (method, target);
+        arg = coerce (method, method.getParameterTypes ()[0], arg);
+        MethodHandle handle = invoker (method);
+        try {
+            return (Object) handle.invokeExact (target, arg);
+        } catch (Throwable t) {
+            throw new InvocationTargetException (t);
+        }
+    }
+
+    /**
+     * 调用任意参数个数的方法
+     * @param method 方法
+     * @param target 对象实例。静态方法时忽略
+     * @param args   参数
+     * @return 方法的返回值，{@code void} 方法返回 {@code null}
+     * @throws InvocationTargetException 方法本身抛出的异常被包裹在这个异常中
+     * @throws IllegalAccessException 无法访问目标方法时抛出
+     */
+    public static Object invoke (Method method, Object target, Object[] args) throws InvocationTargetException, IllegalAccessException {
+        int count = method.getParameterCount ();
+        if (count == 0) {
+            return invoke (method, target);
+        } else if (count == 1) {
+            return invoke (method, target, args[0]);
+        }
+        checkArity (method, args.length);
+        checkTarget (method, target);
+        Class<?>[] types = method.getParameterTypes ();
+        Object[] values = args;
+        for (int i = 0; i < types.length; i ++) {
+            Object value = coerce (method, types[i], args[i]);
+            if (value != args[i]) {
+                if (values == args) {
+                    values = args.clone ();
+                }
+                values[i] = value;
+            }
+        }
+        args = values;
+        MethodHandle handle = invoker (method);
+        try {
+            return (Object) handle.invokeExact (target, args);
+        } catch (Throwable t) {
+            throw new InvocationTargetException (t);
+        }
+    }
+
+    private static void checkArity (Method method, int expected) {
+        if (method.getParameterCount () != expected) {
+            throw new IllegalArgumentException (
+                    "method " + method + " expects " + method.getParameterCount () + " argument(s), but " + expected + " given"
+            );
+        }
+    }
+
+    /** 和反射一样检查目标对象 */
+    private static void checkTarget (Member member, Object target) {
+        if (!Modifier.isStatic (member.getModifiers ())) {
+            if (target == null) {
+                throw new NullPointerException ("target of " + member + " is null");
+            }
+            if (!member.getDeclaringClass ().isInstance (target)) {
+                throw new IllegalArgumentException (
+                        "object is not an instance of declaring class: " + target.getClass ().getName () + ", " + member
+                );
+            }
+        }
+    }
+
+    /**
+     * 和反射一样检查参数类型，基本类型的参数允许拆箱后的宽化转换
+     * @return 可以直接传给方法句柄的值
+     */
+    private static Object coerce (Member member, Class<?> type, Object value) {
+        if (!type.isPrimitive ()) {
+            if (value == null || type.isInstance (value)) {
+                return value;
+            }
+        } else if (value != null) {
+            Class<?> source = value.getClass ();
+            if (source == WRAPPERS.get (type)) {
+                return value;
+            }
+            int from = rank (source), to = rank (WRAPPERS.get (type));
+            // char 只能宽化为 int 及以上，其他数值类型不能转为 char
+            if (from >= 0 && to > from && to != CHAR && (source != Character.class || to > SHORT)) {
+                return widen (value, type);
+            }
+        }
+        throw new IllegalArgumentException (
+                "argument type mismatch: " + (value == null ? "null" : value.getClass ().getName ()) + " -> " + type.getName () + ", " + member
+        );
+    }
+
+    private static final int SHORT = 1, CHAR = 2;
+    /** 宽化转换的顺序 */
+    private static final Class<?>[] RANKS = {
+            Byte.class, Short.class, Character.class, Integer.class, Long.class, Float.class, Double.class
+    };
+    private static final Map<Class<?>, Class<?>> WRAPPERS = new HashMap<> ();
+    static {
+        WRAPPERS.put (boolean.class, Boolean.class);
+        WRAPPERS.put (byte.class,    Byte.class);
+        WRAPPERS.put (short.class,   Short.class);
+        WRAPPERS.put (char.class,    Character.class);
+        WRAPPERS.put (int.class,     Integer.class);
+        WRAPPERS.put (long.class,    Long.class);
+        WRAPPERS.put (float.class,   Float.class);
+        WRAPPERS.put (double.class,  Double.class);
+    }
+
+    private static int rank (Class<?> wrapper) {
+        for (int i = 0; i < RANKS.length; i ++) {
+            if (RANKS[i] == wrapper) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Object widen (Object value, Class<?> type) {
+        long n = value instanceof Character ? (Character) value : 0;
+        if (type == float.class) {
+            return value instanceof Character ? (float) n : ((Number) value).floatValue ();
+        } else if (type == double.class) {
+            return value instanceof Character ? (double) n : ((Number) value).doubleValue ();
+        } else if (type == long.class) {
+            return value instanceof Character ? n : ((Number) value).longValue ();
+        } else if (type == int.class) {
+            return value instanceof Character ? (int) n : ((Number) value).intValue ();
+        } else {
+            return ((Number) value).shortValue ();
+        }
+    }
+
+    private static MethodHandle setter (Field field) throws IllegalAccessException {
+        Map<Member, MethodHandle> map = HANDLES.get (field.getDeclaringClass ());
+        MethodHandle handle = map.get (field);
+        if (handle == null) {
+            if (!field.isAccessible ()) {
+                field.setAccessible (true);
+            }
+            handle = LOOKUP.unreflectSetter (field);
+            if (Modifier.isStatic (field.getModifiers ())) {
+                handle = MethodHandles.dropArguments (handle, 0, Object.class);
+            }
+            handle = handle.asType (SETTER);
+            map.put (field, handle);
+        }
+        return handle;
+    }
+
+    private static MethodHandle invoker (Method method) throws IllegalAccessException {
+        Map<Member, MethodHandle> map = HANDLES.get (method.getDeclaringClass ());
+        MethodHandle handle = map.get (method);
+        if (handle == null) {
+            if (!method.isAccessible ()) {
+                method.setAccessible (true);
+            }
+            handle = LOOKUP.unreflect (method);
+            if (Modifier.isStatic (method.getModifiers ())) {
+                handle = MethodHandles.dropArguments (handle, 0, Object.class);
+            }
+            int count = method.getParameterCount ();
+            if (count == 0) {
+                handle = handle.asType (INVOKE0);
+            } else if (count == 1) {
+                handle = handle.asType (INVOKE1);
+            } else {
+                handle = handle.asSpreader (Object[].class, count).asType (INVOKEN);
+            }
+            map.put (method, handle);
+        }
+        return handle;
+    }
+}
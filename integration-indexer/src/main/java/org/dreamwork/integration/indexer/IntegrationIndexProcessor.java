@@ -0,0 +1,185 @@
+package org.dreamwork.integration.indexer;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 编译期生成模块的类索引.
+ *
+ * <p>处理器在编译结束时写出 {@code META-INF/integration-index} 文件，每行一条记录，格式为：</p>
+ * <pre>
+ * package   &lt;包名&gt;
+ * &lt;种类&gt;    &lt;类的二进制名称&gt;[#&lt;成员名称&gt;]
+ * </pre>
+ * <p>其中 {@code package} 记录本次编译覆盖的所有包，种类包括：</p>
+ * <ul>
+ *     <li>{@code resource} - 标注了 {@code @javax.annotation.Resource} 的类或成员</li>
+ *     <li>{@code restful} - 标注了 {@code @ARestfulAPI} 的类或方法</li>
+ *     <li>{@code configured} - 标注了 {@code @AConfigured} 的类或成员</li>
+ *     <li>{@code post-construct} - 标注了 {@code @javax.annotation.PostConstruct} 的方法</li>
+ * </ul>
+ * <p>框架的扫描器在索引存在时直接从索引中获取需要加载的类，而不必加载包内所有的类。
+ * 处理器只依赖于注解的名称，不依赖于任何注解类。</p>
+ * <p>增量编译时只有部分类被重新编译，处理器会合并输出目录中已有的索引：本次编译的类的记录被替换，
+ * 已经不存在的类的记录被删除，其余的记录保持不变</p>
+ *
+ * @since 1.1.0
+ */
+public class IntegrationIndexProcessor extends AbstractProcessor {
+    /** 索引文件的位置，和 {@code org.dreamwork.integration.api.ClassIndex#LOCATION} 保持一致 */
+    static final String LOCATION = "META-INF/integration-index";
+
+    private static final String RESOURCE       = "javax.annotation.Resource";
+    private static final String RESTFUL        = "org.dreamwork.integration.httpd.annotation.ARestfulAPI";
+    private static final String CONFIGURED     = "org.dreamwork.integration.api.annotation.AConfigured";
+    private static final String POST_CONSTRUCT = "javax.annotation.PostConstruct";
+
+    private final Set<String> packages = new TreeSet<> ();
+    private final Set<String> entries  = new TreeSet<> ();
+    /** 本次编译的所有类的二进制名称 */
+    private final Set<String> compiled = new HashSet<> ();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes () {
+        // 需要看到所有的类才能记录完整的包列表
+        return Collections.singleton ("*");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion () {
+        return SourceVersion.latestSupported ();
+    }
+
+    @Override
+    public boolean process (Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        if (env.processingOver ()) {
+            write ();
+        } else {
+            for (Element e : env.getRootElements ()) {
+                if (e instanceof TypeElement) {
+                    index ((TypeElement) e);
+                }
+            }
+        }
+        // 不声明任何注解，其他处理器仍然可以处理它们
+        return false;
+    }
+
+    private void index (TypeElement type) {
+        Elements elements = processingEnv.getElementUtils ();
+        String name = elements.getBinaryName (type).toString ();
+        compiled.add (name);
+        packages.add (elements.getPackageOf (type).getQualifiedName ().toString ());
+
+        collect (type, name, RESOURCE, "resource");
+        collect (type, name, RESTFUL, "restful");
+        collect (type, name, CONFIGURED, "configured");
+
+        for (Element member : type.getEnclosedElements ()) {
+            switch (member.getKind ()) {
+                case FIELD:
+                case METHOD: {
+                    String ref = name + '#' + member.getSimpleName ();
+                    collect (member, ref, RESOURCE, "resource");
+                    collect (member, ref, RESTFUL, "restful");
+                    collect (member, ref, CONFIGURED, "configured");
+                    collect (member, ref, POST_CONSTRUCT, "post-construct");
+                    break;
+                }
+                case CLASS:
+                case INTERFACE:
+                case ENUM:
+                    index ((TypeElement) member);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void collect (Element element, String ref, String annotation, String kind) {
+        for (AnnotationMirror am : element.getAnnotationMirrors ()) {
+            TypeElement type = (TypeElement) am.getAnnotationType ().asElement ();
+            if (annotation.contentEquals (type.getQualifiedName ())) {
+                entries.add (kind + ' ' + ref);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 合并输出目录中已有的索引
+     */
+    private void merge () {
+        Elements elements = processingEnv.getElementUtils ();
+        FileObject file;
+        try {
+            file = processingEnv.getFiler ().getResource (StandardLocation.CLASS_OUTPUT, "", LOCATION);
+        } catch (IOException | IllegalArgumentException ex) {
+            return;
+        }
+        try (Reader in = file.openReader (true); BufferedReader reader = new BufferedReader (in)) {
+            String line;
+            while ((line = reader.readLine ()) != null) {
+                line = line.trim ();
+                int pos = line.indexOf (' ');
+                if (line.isEmpty () || line.charAt (0) == '#' || pos <= 0) {
+                    continue;
+                }
+                String kind = line.substring (0, pos), ref = line.substring (pos + 1).trim ();
+                if ("package".equals (kind)) {
+                    if (elements.getPackageElement (ref) != null) {
+                        packages.add (ref);
+                    }
+                } else {
+                    int sharp = ref.indexOf ('#');
+                    String name = sharp < 0 ? ref : ref.substring (0, sharp);
+                    // 本次编译的类已经重新记录，不存在的类直接丢弃
+                    if (!compiled.contains (name) && elements.getTypeElement (name.replace ('$', '.')) != null) {
+                        entries.add (kind + ' ' + ref);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            // 没有已有的索引
+        }
+    }
+
+    private void write () {
+        if (packages.isEmpty ()) {
+            return;
+        }
+        merge ();
+        try {
+            FileObject file = processingEnv.getFiler ().createResource (StandardLocation.CLASS_OUTPUT, "", LOCATION);
+            try (Writer writer = new OutputStreamWriter (file.openOutputStream (), StandardCharsets.UTF_8)) {
+                writer.write ("# generated by integration-indexer, do not edit\n");
+                for (String p : packages) {
+                    writer.write ("package " + p + '\n');
+                }
+                for (String entry : entries) {
+                    writer.write (entry);
+                    writer.write ('\n');
+                }
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager ().printMessage (Diagnostic.Kind.WARNING, "cannot write " + LOCATION + ": " + ex.getMessage ());
+        }
+    }
+}